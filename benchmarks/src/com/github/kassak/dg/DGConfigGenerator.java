@@ -0,0 +1,106 @@
+package com.github.kassak.dg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic config files for benchmarks. Output is deterministic for a given size.
+ */
+public final class DGConfigGenerator {
+  private static final String[] DBMS = {"POSTGRES", "MYSQL", "ORACLE", "MSSQL", "SQLITE", "CLICKHOUSE", "DB2", "H2", "HSQL", "SNOWFLAKE"};
+  private static final String[] ALIASES = {"pg", "tsql", "chouse", "postgresql", "hsql", "mysql", "oracle", "sqlite", "snowflake", "redshift"};
+
+  private DGConfigGenerator() {
+  }
+
+  @NotNull
+  public static List<String> uuids(int size) {
+    List<String> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      res.add(DBMS[i % DBMS.length].toLowerCase() + "_" + (10 + i % 7) + (i % 3 == 0 ? "_cloud" : "") + "_" + i);
+    }
+    return res;
+  }
+
+  @NotNull
+  public static String dataSources(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<dataSources>\n");
+    int i = 0;
+    for (String uuid : uuids(size)) {
+      sb.append("  <data-source name=\"").append(uuid).append("\" uuid=\"").append(uuid).append("\">\n")
+        .append("    <!-- generated -->\n")
+        .append("    <database-info dbms=\"").append(DBMS[i % DBMS.length]).append("\" exact-version=\"").append(10 + i % 7).append(".0\"/>\n")
+        .append("    <driver-ref>").append(DBMS[i % DBMS.length].toLowerCase()).append("</driver-ref>\n")
+        .append("    <jdbc-url>jdbc:test://localhost:5432/db").append(i).append("?a=1&amp;b=2</jdbc-url>\n")
+        .append("  </data-source>\n");
+      i++;
+    }
+    return sb.append("</dataSources>\n").toString();
+  }
+
+  @NotNull
+  public static String drivers(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<drivers>\n");
+    for (int i = 0; i < size; i++) {
+      sb.append("  <driver id=\"driver_").append(i).append('"');
+      if (i % 4 != 0) sb.append(" based-on=\"driver_").append(i / 4 * 4).append('"');
+      sb.append(" name=\"Driver ").append(i).append("\">\n");
+      if (i % 4 == 0) {
+        sb.append("    <artifact name=\"").append(DBMS[i % DBMS.length]).append(" JDBC Driver (").append(i).append(")\" version=\"")
+          .append(i % 10).append(".").append(i % 3).append("\"/>\n");
+      }
+      sb.append("    <option name=\"x\" value=\"").append(i).append("\"/>\n")
+        .append("  </driver>\n");
+    }
+    return sb.append("</drivers>\n").toString();
+  }
+
+  @NotNull
+  public static String artifacts(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<artifacts>\n");
+    for (int i = 0; i < size; i++) {
+      sb.append("  <artifact name=\"").append(DBMS[i % DBMS.length]).append(" JDBC Driver (").append(i).append(") 8\">\n");
+      for (int v = 0; v < 3; v++) {
+        sb.append("    <version version=\"").append(v).append('.').append(i % 10).append("\">\n")
+          .append("      <item type=\"maven\" url=\"org.example:driver-").append(i).append(':').append(v).append("\"/>\n")
+          .append("    </version>\n");
+      }
+      sb.append("  </artifact>\n");
+    }
+    return sb.append("</artifacts>\n").toString();
+  }
+
+  @NotNull
+  public static List<String> artifactNames(int size) {
+    List<String> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      res.add(DBMS[i % DBMS.length] + " JDBC Driver (" + i + ") 8");
+    }
+    return res;
+  }
+
+  /**
+   * Names of SQL files in a test-data tree, a third of them carry no dbms prefix.
+   */
+  @NotNull
+  public static List<String> sqlFileNames(int size) {
+    Random random = new Random(size);
+    List<String> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String prefix = i % 3 == 0 ? "script" : ALIASES[random.nextInt(ALIASES.length)];
+      res.add(prefix + "_" + Integer.toHexString(random.nextInt()) + ".sql");
+    }
+    return res;
+  }
+
+  /**
+   * Filters shaped like the ones people keep in the DS filter combo box.
+   */
+  @NotNull
+  public static List<String> filters() {
+    return List.of(".*", "postgres.*", "(mysql|oracle)_1[0-2].*", ".*_cloud_.*", "h2_.*_1\\d{3}", "(?!sqlite).*_5\\d*");
+  }
+}
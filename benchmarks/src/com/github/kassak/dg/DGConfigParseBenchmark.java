@@ -0,0 +1,56 @@
+package com.github.kassak.dg;
+
+import com.intellij.testFramework.LightVirtualFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DGConfigParseBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private String myDataSources;
+  private String myDrivers;
+  private String myArtifacts;
+  private List<String> myArtifactNames;
+  private LightVirtualFile myFile;
+
+  @Setup
+  public void setUp() {
+    myDataSources = DGConfigGenerator.dataSources(size);
+    myDrivers = DGConfigGenerator.drivers(size);
+    myArtifacts = DGConfigGenerator.artifacts(size);
+    myArtifactNames = DGConfigGenerator.artifactNames(size);
+    myFile = new LightVirtualFile("bench.xml");
+  }
+
+  @Benchmark
+  public void dataSources(Blackhole bh) {
+    DGTestDataSources.PARSER.parse(myDataSources, myFile, myFile.getModificationStamp(), bh::consume);
+  }
+
+  @Benchmark
+  public void drivers(Blackhole bh) {
+    DGTestDrivers.PARSER.parse(myDrivers, myFile, myFile.getModificationStamp(), bh::consume);
+  }
+
+  @Benchmark
+  public void artifacts(Blackhole bh) {
+    DGTestArtifacts.PARSER.parse(myArtifacts, myFile, myFile.getModificationStamp(), bh::consume);
+  }
+
+  @Benchmark
+  public void artifactNameNormalization(Blackhole bh) {
+    for (String name : myArtifactNames) {
+      bh.consume(DGTestArtifacts.getArtifactId(null, name, null));
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.kassak.dg;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DGDialectDetectionBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private List<String> myNames;
+
+  @Setup
+  public void setUp() {
+    myNames = DGConfigGenerator.sqlFileNames(size);
+  }
+
+  @Benchmark
+  public void detectByFileName(Blackhole bh) {
+    for (String name : myNames) {
+      bh.consume(DGDialectsSubstitutor.detectByFileName(name));
+    }
+  }
+}
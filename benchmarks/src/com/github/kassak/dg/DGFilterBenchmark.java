@@ -0,0 +1,76 @@
+package com.github.kassak.dg;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DGFilterBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private List<String> myUuids;
+  private List<String> myFilters;
+  private DGFilterIndex myIndex;
+
+  @Setup
+  public void setUp() {
+    myUuids = DGConfigGenerator.uuids(size);
+    myFilters = DGConfigGenerator.filters();
+    myIndex = new DGFilterIndex(() -> {});
+    myIndex.update(myUuids);
+    for (String filter : myFilters) myIndex.matches(filter);
+  }
+
+  /**
+   * What every use did before the engine: compile and match each uuid.
+   */
+  @Benchmark
+  public void compileAndScan(Blackhole bh) {
+    for (String filter : myFilters) {
+      Pattern p = Pattern.compile(filter);
+      int count = 0;
+      for (String uuid : myUuids) {
+        if (p.matcher(uuid).matches()) count++;
+      }
+      bh.consume(count);
+    }
+  }
+
+  @Benchmark
+  public void cachedCount(Blackhole bh) {
+    for (String filter : myFilters) {
+      bh.consume(myIndex.matches(filter).cardinality());
+    }
+  }
+
+  /**
+   * Cold index: assigns uuid indices and matches every filter once.
+   */
+  @Benchmark
+  public DGFilterIndex buildIndex() {
+    DGFilterIndex index = new DGFilterIndex(() -> {});
+    index.update(myUuids);
+    for (String filter : myFilters) index.matches(filter);
+    return index;
+  }
+
+  /**
+   * Snapshot change which brings one new uuid and drops one.
+   */
+  @Benchmark
+  public void updateOne(Blackhole bh) {
+    List<String> changed = myUuids.subList(1, myUuids.size());
+    myIndex.update(changed);
+    myIndex.update(myUuids);
+    bh.consume(myIndex.live());
+  }
+}
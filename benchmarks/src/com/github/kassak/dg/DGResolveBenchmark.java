@@ -0,0 +1,132 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestArtifacts.DGTestArtifact;
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.github.kassak.dg.DGTestDrivers.DGTestDriver;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot queries behind Goto Symbol, reference resolve and completion variants.
+ * Each lookup benchmark does {@link #LOOKUPS} queries per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DGResolveBenchmark {
+  private static final int LOOKUPS = 1000;
+  private static final GlobalSearchScope EVERYTHING = new GlobalSearchScope() {
+    @Override
+    public boolean contains(@NotNull VirtualFile file) {
+      return true;
+    }
+
+    @Override
+    public boolean isSearchInModuleContent(@NotNull Module aModule) {
+      return true;
+    }
+
+    @Override
+    public boolean isSearchInLibraries() {
+      return true;
+    }
+  };
+
+  @Param({"1000", "10000", "100000"})
+  public int size;
+
+  private VirtualFile myFile;
+  private List<DGTestDataSource> myDataSources;
+  private List<DGTestDriver> myDrivers;
+  private List<DGTestArtifact> myArtifacts;
+  private DGConfigModel.Snapshot mySnapshot;
+  private String[] myDriverIds;
+  private DGTestArtifact[] myArtifactKeys;
+
+  @Setup
+  public void setUp() {
+    myFile = new LightVirtualFile("bench.xml");
+    myDataSources = new ArrayList<>();
+    DGTestDataSources.PARSER.parse(DGConfigGenerator.dataSources(size), myFile, myFile.getModificationStamp(), myDataSources::addAll);
+    myDrivers = new ArrayList<>();
+    DGTestDrivers.PARSER.parse(DGConfigGenerator.drivers(size), myFile, myFile.getModificationStamp(), myDrivers::addAll);
+    myArtifacts = new ArrayList<>();
+    DGTestArtifacts.PARSER.parse(DGConfigGenerator.artifacts(size), myFile, myFile.getModificationStamp(), myArtifacts::addAll);
+    mySnapshot = newSnapshot();
+    mySnapshot.getNames();
+
+    Random random = new Random(size);
+    myDriverIds = new String[LOOKUPS];
+    myArtifactKeys = new DGTestArtifact[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      myDriverIds[i] = myDrivers.get(random.nextInt(myDrivers.size())).id;
+      myArtifactKeys[i] = myArtifacts.get(random.nextInt(myArtifacts.size()));
+    }
+  }
+
+  @NotNull
+  private DGConfigModel.Snapshot newSnapshot() {
+    return new DGConfigModel.Snapshot(0,
+                                      Map.of(myFile, DGConfigModel.DATA_SOURCES.create("bench-test-data-sources.xml", myDataSources)),
+                                      Map.of(myFile, DGConfigModel.DRIVERS.create("bench-drivers.xml", myDrivers)),
+                                      Map.of(myFile, DGConfigModel.ARTIFACTS.create("bench-database-artifacts.xml", myArtifacts)),
+                                      null);
+  }
+
+  /**
+   * Cold snapshot with driver graph and name table, what the first reader after a change pays.
+   */
+  @Benchmark
+  public DGConfigNameTable buildSnapshot() {
+    DGConfigModel.Snapshot snapshot = newSnapshot();
+    snapshot.getDriverGraph();
+    return snapshot.getNames();
+  }
+
+  @Benchmark
+  public void gotoNames(Blackhole bh) {
+    mySnapshot.getNames().processNames(name -> {
+      bh.consume(name);
+      return true;
+    }, EVERYTHING, null);
+  }
+
+  @Benchmark
+  public void resolveDriver(Blackhole bh) {
+    for (String id : myDriverIds) {
+      bh.consume(mySnapshot.getDrivers(id));
+      bh.consume(mySnapshot.getDriverGraph().getArtifactName(id));
+    }
+  }
+
+  @Benchmark
+  public void resolveArtifactVersion(Blackhole bh) {
+    for (DGTestArtifact key : myArtifactKeys) {
+      bh.consume(key.version == null ? mySnapshot.getArtifacts(key.id) : mySnapshot.getArtifact(key.id, key.version));
+    }
+  }
+
+  /**
+   * Driver reference variants, without lookup element creation.
+   */
+  @Benchmark
+  public void driverVariants(Blackhole bh) {
+    for (DGTestDriver driver : mySnapshot.getDrivers()) {
+      bh.consume(driver.getName());
+    }
+  }
+}
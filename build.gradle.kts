@@ -29,6 +29,16 @@ allprojects {
       java.srcDir("tests/src")
       resources.srcDirs("tests/testData")
     }
+    create("jmh") {
+      java.srcDir("benchmarks/src")
+      compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+      runtimeClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+    }
+  }
+  dependencies {
+    "testImplementation"("junit:junit:4.13.2")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
   }
   apply {
     plugin("org.jetbrains.intellij")
@@ -58,6 +68,15 @@ allprojects {
     buildSearchableOptions {
       enabled = false
     }
+
+    // ./gradlew jmh -Pjmh.include=DGFilterBenchmark
+    register<JavaExec>("jmh") {
+      group = "verification"
+      description = "Runs JMH benchmarks from benchmarks/src"
+      classpath = sourceSets["jmh"].runtimeClasspath
+      mainClass.set("org.openjdk.jmh.Main")
+      args(project.properties["jmh.include"] as String? ?: "com\\.github\\.kassak\\.dg\\..*Benchmark")
+    }
   }
 }
 
@@ -0,0 +1,142 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestArtifacts.DGTestArtifact;
+import com.github.kassak.dg.DGTestDrivers.DGTestDriver;
+import com.github.kassak.dg.DGTestUtils.ConfigItem;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementPresentation;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Lookup elements of a snapshot, built once and shared by every completion on it.
+ * Names are sorted, so a prefix selects a contiguous range, and icons are resolved only when an element is rendered.
+ */
+final class DGCompletionPool {
+  static final Comparator<String> NEWEST_FIRST =
+    ((Comparator<String>)StringUtil::compareVersionNumbers).thenComparing(Comparator.naturalOrder()).reversed();
+
+  private final String[] myDriverNames;
+  private final LookupElement[] myDrivers;
+  private final String[] myArtifactIds;
+  private final LookupElement[] myArtifacts;
+  private final Map<String, LookupElement[]> myVersions = new HashMap<>();
+  private final LookupElement[] myAllVersions;
+
+  DGCompletionPool(@NotNull List<DGTestDriver> drivers, @NotNull List<DGTestArtifact> artifacts) {
+    TreeMap<String, ConfigItem> driversByName = new TreeMap<>();
+    for (DGTestDriver driver : drivers) {
+      ProgressManager.checkCanceled();
+      driversByName.putIfAbsent(driver.getName(), driver);
+    }
+    myDriverNames = ArrayUtil.toStringArray(driversByName.keySet());
+    myDrivers = elements(driversByName);
+
+    TreeMap<String, ConfigItem> artifactsById = new TreeMap<>();
+    Map<String, TreeMap<String, ConfigItem>> versionsById = new HashMap<>();
+    TreeMap<String, ConfigItem> allVersions = new TreeMap<>(NEWEST_FIRST);
+    for (DGTestArtifact artifact : artifacts) {
+      ProgressManager.checkCanceled();
+      artifactsById.putIfAbsent(artifact.id, artifact);
+      if (artifact.version == null) continue;
+      versionsById.computeIfAbsent(artifact.id, k -> new TreeMap<>(NEWEST_FIRST)).putIfAbsent(artifact.version, artifact);
+      allVersions.putIfAbsent(artifact.version, artifact);
+    }
+    myArtifactIds = ArrayUtil.toStringArray(artifactsById.keySet());
+    myArtifacts = elements(artifactsById);
+    versionsById.forEach((id, versions) -> myVersions.put(id, ranked(versions)));
+    myAllVersions = ranked(allVersions);
+  }
+
+  void addDrivers(@NotNull CompletionResultSet result) {
+    addSorted(myDriverNames, myDrivers, result);
+  }
+
+  void addArtifactIds(@NotNull CompletionResultSet result) {
+    addSorted(myArtifactIds, myArtifacts, result);
+  }
+
+  /**
+   * Versions of the artifact, or of all artifacts when it is unknown, newest first.
+   */
+  void addVersions(@Nullable String artifactId, @NotNull CompletionResultSet result) {
+    LookupElement[] versions = artifactId == null ? myAllVersions : myVersions.get(artifactId);
+    if (versions == null) return;
+    String prefix = result.getPrefixMatcher().getPrefix();
+    boolean found = false;
+    for (LookupElement element : versions) {
+      if (element.getLookupString().startsWith(prefix)) {
+        result.addElement(element);
+        found = true;
+      }
+    }
+    if (!found) result.addAllElements(Arrays.asList(versions));
+  }
+
+  /**
+   * Streams the range starting with the prefix. When it is empty, the whole list goes to the result's matcher,
+   * so camel humps and typos still complete.
+   */
+  private static void addSorted(String @NotNull [] names, LookupElement @NotNull [] elements, @NotNull CompletionResultSet result) {
+    String prefix = result.getPrefixMatcher().getPrefix();
+    int idx = Arrays.binarySearch(names, prefix);
+    int from = idx < 0 ? -idx - 1 : idx;
+    int to = from;
+    while (to < names.length && names[to].startsWith(prefix)) {
+      result.addElement(elements[to++]);
+    }
+    if (to == from) result.addAllElements(Arrays.asList(elements));
+  }
+
+  private static LookupElement @NotNull [] elements(@NotNull Map<String, ConfigItem> items) {
+    LookupElement[] res = new LookupElement[items.size()];
+    int i = 0;
+    for (Map.Entry<String, ConfigItem> e : items.entrySet()) {
+      res[i++] = new ItemLookupElement(e.getKey(), e.getValue());
+    }
+    return res;
+  }
+
+  private static LookupElement @NotNull [] ranked(@NotNull Map<String, ConfigItem> versions) {
+    LookupElement[] res = elements(versions);
+    for (int i = 0; i < res.length; i++) {
+      res[i] = PrioritizedLookupElement.withPriority(res[i], res.length - i);
+    }
+    return res;
+  }
+
+  private static final class ItemLookupElement extends LookupElement {
+    private final String myName;
+    private final ConfigItem myItem;
+
+    ItemLookupElement(@NotNull String name, @NotNull ConfigItem item) {
+      myName = name;
+      myItem = item;
+    }
+
+    @NotNull
+    @Override
+    public String getLookupString() {
+      return myName;
+    }
+
+    @NotNull
+    @Override
+    public Object getObject() {
+      return myItem;
+    }
+
+    @Override
+    public void renderElement(@NotNull LookupElementPresentation presentation) {
+      presentation.setItemText(myName);
+      presentation.setIcon(myItem.getIcon());
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.github.kassak.dg;
+
+import com.intellij.codeInsight.completion.*;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.util.ProcessingContext;
+import org.jetbrains.annotations.NotNull;
+
+import static com.intellij.patterns.PlatformPatterns.psiElement;
+
+/**
+ * Completes driver references, artifact ids and versions in DG test configs from the snapshot completion pool.
+ */
+public class DGConfigCompletionContributor extends CompletionContributor {
+  public DGConfigCompletionContributor() {
+    extend(CompletionType.BASIC, psiElement().inside(DGConfigReferenceContributor.driverRefValue()), new Provider() {
+      @Override
+      void addVariants(@NotNull PsiElement position, @NotNull DGConfigModel.Snapshot snapshot, @NotNull CompletionResultSet result) {
+        snapshot.getCompletionPool().addDrivers(result);
+      }
+    });
+    extend(CompletionType.BASIC, psiElement().inside(DGConfigReferenceContributor.driverBaseValue()), new Provider() {
+      @Override
+      void addVariants(@NotNull PsiElement position, @NotNull DGConfigModel.Snapshot snapshot, @NotNull CompletionResultSet result) {
+        snapshot.getCompletionPool().addDrivers(result);
+      }
+    });
+    extend(CompletionType.BASIC, psiElement().inside(DGConfigReferenceContributor.driverArtifactIdValue()), new Provider() {
+      @Override
+      void addVariants(@NotNull PsiElement position, @NotNull DGConfigModel.Snapshot snapshot, @NotNull CompletionResultSet result) {
+        snapshot.getCompletionPool().addArtifactIds(result);
+      }
+    });
+    extend(CompletionType.BASIC, psiElement().inside(DGConfigReferenceContributor.driverArtifactVersionValue()), new Provider() {
+      @Override
+      void addVariants(@NotNull PsiElement position, @NotNull DGConfigModel.Snapshot snapshot, @NotNull CompletionResultSet result) {
+        snapshot.getCompletionPool().addVersions(DGConfigReferenceContributor.findArtifactId(position, snapshot), result);
+      }
+    });
+  }
+
+  private static abstract class Provider extends CompletionProvider<CompletionParameters> {
+    @Override
+    protected void addCompletions(@NotNull CompletionParameters parameters, @NotNull ProcessingContext context,
+                                  @NotNull CompletionResultSet result) {
+      long start = DGMetrics.start();
+      PsiElement position = parameters.getPosition();
+      DGConfigModel.Snapshot snapshot = DGConfigModel.getInstance(position.getProject()).getSnapshot();
+      addVariants(position, snapshot, result.withPrefixMatcher(getValuePrefix(parameters)));
+      DGMetrics.record(DGMetrics.COMPLETION, start);
+    }
+
+    abstract void addVariants(@NotNull PsiElement position, @NotNull DGConfigModel.Snapshot snapshot, @NotNull CompletionResultSet result);
+
+    /**
+     * Whole value before the caret, versions and driver ids have dots which the default prefix stops at.
+     */
+    @NotNull
+    private static String getValuePrefix(@NotNull CompletionParameters parameters) {
+      PsiElement position = parameters.getPosition();
+      TextRange range = position.getTextRange();
+      int end = Math.max(0, Math.min(parameters.getOffset(), range.getEndOffset()) - range.getStartOffset());
+      return position.getText().substring(0, end).trim();
+    }
+  }
+}
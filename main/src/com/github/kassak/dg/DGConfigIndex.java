@@ -0,0 +1,193 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestUtils.ConfigItem;
+import com.github.kassak.dg.DGTestUtils.ConfigParser;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.SmartList;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Config items by id: data source uuid, driver id or artifact id. The kind of an item follows from its file name.
+ * Values keep the tag offset and the fields of the item, so {@link DGConfigModel} builds its snapshot without parsing
+ * and {@link DGTagLocator} finds the current tag of an item by its id.
+ * Files are indexed by name, the model only reads files at the places DG reads configs from, see {@link DGModules#getConfigKind}.
+ * The index is PSI dependent: unsaved documents are indexed at their last committed text.
+ */
+public class DGConfigIndex extends FileBasedIndexExtension<String, List<DGConfigIndex.Entry>> implements PsiDependentIndex {
+  public static final ID<String, List<Entry>> NAME = ID.create("com.github.kassak.dg.config");
+
+  public enum Kind {
+    DATA_SOURCE(DGTestDataSources.PARSER),
+    DRIVER(DGTestDrivers.PARSER),
+    ARTIFACT(DGTestArtifacts.PARSER);
+
+    public final ConfigParser<?, ?> parser;
+
+    Kind(@NotNull ConfigParser<?, ?> parser) {
+      this.parser = parser;
+    }
+  }
+
+  @Nullable
+  public static Kind getKind(@NotNull String fileName) {
+    if (DGTestDataSources.isTestDataSource(fileName)) return Kind.DATA_SOURCE;
+    if (DGTestDrivers.isTestDatabaseDrivers(fileName)) return Kind.DRIVER;
+    if (DGTestArtifacts.isDatabaseArtifacts(fileName)) return Kind.ARTIFACT;
+    return null;
+  }
+
+  @NotNull
+  @Override
+  public ID<String, List<Entry>> getName() {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Entry>, FileContent> getIndexer() {
+    return inputData -> {
+      Kind kind = getKind(inputData.getFileName());
+      if (kind == null) return Collections.emptyMap();
+      return index(kind.parser, inputData.getContentAsText(), inputData.getFile());
+    };
+  }
+
+  @NotNull
+  private static <T extends ConfigItem> Map<String, List<Entry>> index(@NotNull ConfigParser<T, ?> parser, @NotNull CharSequence text,
+                                                                     @NotNull VirtualFile file) {
+    long start = DGMetrics.start();
+    Map<String, List<Entry>> res = new HashMap<>();
+    parser.parse(text, file, DGTagLocator.UNKNOWN_STAMP, items -> {
+      for (T item : items) {
+        String[] fields = parser.externalize(item);
+        res.computeIfAbsent(fields[0], k -> new SmartList<>()).add(new Entry(item.getLocator().getOffset(), fields));
+      }
+    });
+    DGMetrics.record(DGMetrics.PARSE_FILE, start);
+    return res;
+  }
+
+  /**
+   * Entries of a file in document order.
+   */
+  @NotNull
+  public static List<Entry> getEntries(@NotNull Project project, @NotNull VirtualFile file) {
+    Map<String, List<Entry>> data = FileBasedIndex.getInstance().getFileData(NAME, file, project);
+    if (data.isEmpty()) return Collections.emptyList();
+    List<Entry> res = new ArrayList<>();
+    for (List<Entry> entries : data.values()) {
+      res.addAll(entries);
+    }
+    res.sort(Comparator.comparingInt(e -> e.offset));
+    return res;
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<List<Entry>> getValueExternalizer() {
+    return new DataExternalizer<>() {
+      @Override
+      public void save(@NotNull DataOutput out, List<Entry> value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value.size());
+        for (Entry e : value) {
+          DataInputOutputUtil.writeINT(out, e.offset);
+          DataInputOutputUtil.writeINT(out, e.fields.length);
+          for (String field : e.fields) {
+            writeNullable(out, field);
+          }
+        }
+      }
+
+      @Override
+      public List<Entry> read(@NotNull DataInput in) throws IOException {
+        int size = DataInputOutputUtil.readINT(in);
+        List<Entry> res = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          int offset = DataInputOutputUtil.readINT(in);
+          String[] fields = new String[DataInputOutputUtil.readINT(in)];
+          for (int j = 0; j < fields.length; j++) {
+            fields[j] = readNullable(in);
+          }
+          res.add(new Entry(offset, fields));
+        }
+        return res;
+      }
+    };
+  }
+
+  private static void writeNullable(@NotNull DataOutput out, @Nullable String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) IOUtil.writeUTF(out, s);
+  }
+
+  @Nullable
+  private static String readNullable(@NotNull DataInput in) throws IOException {
+    return in.readBoolean() ? IOUtil.readUTF(in) : null;
+  }
+
+  @Override
+  public int getVersion() {
+    return 4;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(XmlFileType.INSTANCE) {
+      @Override
+      public boolean acceptInput(@NotNull VirtualFile file) {
+        return DGTestUtils.isConfigFile(file.getName());
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  /**
+   * Item tag offset and {@link ConfigParser#externalize fields}.
+   */
+  public static final class Entry {
+    public final int offset;
+    public final String[] fields;
+
+    public Entry(int offset, String @NotNull [] fields) {
+      this.offset = offset;
+      this.fields = fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Entry e)) return false;
+      return offset == e.offset && Arrays.equals(fields, e.fields);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * offset + Arrays.hashCode(fields);
+    }
+  }
+}
@@ -0,0 +1,691 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGConfigIndex.Entry;
+import com.github.kassak.dg.DGConfigIndex.Kind;
+import com.github.kassak.dg.DGTestArtifacts.DGTestArtifact;
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.github.kassak.dg.DGTestDrivers.DGTestDriver;
+import com.github.kassak.dg.DGTestUtils.ConfigFile;
+import com.github.kassak.dg.DGTestUtils.ConfigItem;
+import com.github.kassak.dg.DGTestUtils.ConfigParser;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.JBIterable;
+import com.intellij.util.messages.MessageBusConnection;
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Project-wide model of config items, read from {@link DGConfigIndex}.
+ * An edit inside a top-level tag keeps the text of that tag, the next reader parses it and patches the file's segment.
+ * Other changes mark their files dirty, the next reader re-reads those files from the index.
+ * Readers get an immutable snapshot without locking, files whose items changed are published to {@link #TOPIC}.
+ */
+public class DGConfigModel implements Disposable {
+  public static final Topic<Listener> TOPIC = Topic.create("DG config model", Listener.class);
+
+  static final Loader<DGTestDataSource> DATA_SOURCES = new Loader<>(DGTestDataSources.PARSER, ds -> ds.uuid, true);
+  static final Loader<DGTestDriver> DRIVERS = new Loader<>(DGTestDrivers.PARSER, driver -> driver.id, false);
+  static final Loader<DGTestArtifact> ARTIFACTS = new Loader<>(DGTestArtifacts.PARSER, artifact -> artifact.id, false);
+
+  private static final int MAX_EDITS = 32;
+  private static final Pending RELOAD = new Pending(true, Collections.emptyList());
+
+  private final Project myProject;
+  /**
+   * Counts config events. Content changes put their file to {@link #myPending}, events which may add or remove
+   * config files move {@link #myStructure}. Both are updated before the count, so a reader which sees the count sees them.
+   */
+  private final AtomicLong myInputs = new AtomicLong();
+  private final AtomicLong myStructure = new AtomicLong();
+  private final ConcurrentMap<VirtualFile, Pending> myPending = new ConcurrentHashMap<>();
+  /**
+   * PSI text length of edited files after their last PSI event, turns the next event into a length change.
+   */
+  private final ConcurrentMap<VirtualFile, Integer> myLengths = new ConcurrentHashMap<>();
+  /**
+   * Guarded by this.
+   */
+  private DGConfigStrings myStrings = new DGConfigStrings();
+  private volatile State myState = new State(new Snapshot(-1, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null), -1, -1);
+
+  @NotNull
+  public static DGConfigModel getInstance(@NotNull Project project) {
+    return project.getService(DGConfigModel.class);
+  }
+
+  public DGConfigModel(@NotNull Project project) {
+    myProject = project;
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        onPsiChange(event, true);
+      }
+
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        onPsiChange(event, true);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        onPsiChange(event, true);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        onPsiChange(event, true);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        onPsiChange(event, false);
+      }
+    }, this);
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends @NotNull VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (!isConfigEvent(event)) continue;
+          if (event instanceof VFileContentChangeEvent) {
+            myLengths.remove(event.getFile());
+            markDirty(event.getFile());
+          }
+          else {
+            markStructureChanged();
+          }
+        }
+      }
+    });
+    connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        markStructureChanged();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        markStructureChanged();
+      }
+    });
+  }
+
+  private static boolean isConfigEvent(@NotNull VFileEvent event) {
+    if (event instanceof VFilePropertyChangeEvent pe && pe.isRename()) {
+      return DGTestUtils.isConfigFile(String.valueOf(pe.getOldValue())) || DGTestUtils.isConfigFile(String.valueOf(pe.getNewValue()));
+    }
+    VirtualFile file = event.getFile();
+    return file == null ? DGTestUtils.isConfigFile(event.getPath()) : file.isDirectory() || DGTestUtils.isConfigFile(file.getName());
+  }
+
+  /**
+   * Stamp of the text {@link DGConfigIndex} has for the file: the last committed one for documents.
+   */
+  static long getStamp(@NotNull Project project, @NotNull VirtualFile file) {
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? PsiDocumentManager.getInstance(project).getLastCommittedStamp(document) : file.getModificationStamp();
+  }
+
+  /**
+   * Generic events repeat the specific ones for the whole file and are skipped.
+   *
+   * @param local the change does not move text between tags
+   */
+  private void onPsiChange(@NotNull PsiTreeChangeEvent event, boolean local) {
+    if (event instanceof PsiTreeChangeEventImpl impl && impl.isGenericChange()) return;
+    PsiFile file = event.getFile();
+    if (file == null || !file.isPhysical() || !DGTestUtils.isConfigFile(file.getName())) return;
+    VirtualFile vFile = file.getViewProvider().getVirtualFile();
+    int length = file.getTextLength();
+    Integer oldLength = myLengths.put(vFile, length);
+    XmlTag tag = local && oldLength != null ? findItemTag(event.getParent()) : null;
+    if (tag == null) {
+      markDirty(vFile);
+      return;
+    }
+    TagEdit edit = new TagEdit(tag.getTextRange().getStartOffset(), length - oldLength, tag.getText());
+    myPending.compute(vFile, (f, p) -> p == null ? new Pending(false, List.of(edit)) : p.append(edit));
+    myInputs.incrementAndGet();
+  }
+
+  /**
+   * The top-level tag containing the element, null for the root tag and above.
+   */
+  @Nullable
+  private static XmlTag findItemTag(@Nullable PsiElement element) {
+    XmlTag tag = PsiTreeUtil.getParentOfType(element, XmlTag.class, false);
+    while (tag != null) {
+      XmlTag parent = tag.getParentTag();
+      if (parent == null) return null;
+      if (parent.getParentTag() == null) return tag;
+      tag = parent;
+    }
+    return null;
+  }
+
+  private void markDirty(@NotNull VirtualFile file) {
+    myPending.put(file, RELOAD);
+    myInputs.incrementAndGet();
+  }
+
+  private void markStructureChanged() {
+    myLengths.clear();
+    myStructure.incrementAndGet();
+    myInputs.incrementAndGet();
+  }
+
+  /**
+   * Patches or re-reads the files edited since the last call, or re-reads the whole index after events which may add
+   * or remove config files. Indices are not available in dumb mode, the last snapshot is returned until indexing is over.
+   * Readers hold a read action, so pending edits taken here are all the PSI changes the index and the stamps reflect.
+   */
+  @NotNull
+  public Snapshot getSnapshot() {
+    State state = myState;
+    if (state.inputs == myInputs.get() || DumbService.isDumb(myProject)) {
+      DGMetrics.count(DGMetrics.SNAPSHOT_HIT);
+      return state.snapshot;
+    }
+    List<Change> changes = new ArrayList<>();
+    Snapshot fresh;
+    synchronized (this) {
+      state = myState;
+      long inputs = myInputs.get();
+      if (state.inputs == inputs) return state.snapshot;
+      DGMetrics.count(DGMetrics.SNAPSHOT_MISS);
+      long structure = myStructure.get();
+      Map<VirtualFile, Pending> pending = new HashMap<>();
+      for (VirtualFile file : myPending.keySet()) {
+        Pending p = myPending.remove(file);
+        if (p != null) pending.put(file, p);
+      }
+      fresh = structure != state.structure ? loadAll(state.snapshot, changes) : loadFiles(state.snapshot, pending, changes);
+      myState = new State(fresh, inputs, structure);
+    }
+    for (Change change : changes) {
+      publish(change);
+    }
+    return fresh;
+  }
+
+  @NotNull
+  private Snapshot loadAll(@NotNull Snapshot previous, @NotNull List<Change> changes) {
+    long start = DGMetrics.start();
+    myStrings = new DGConfigStrings();
+    Set<VirtualFile> files = new LinkedHashSet<>(DGModules.getInstance(myProject).getConfigFiles());
+    files.addAll(previous.myDataSourceFiles.keySet());
+    files.addAll(previous.myDriverFiles.keySet());
+    files.addAll(previous.myArtifactFiles.keySet());
+    Snapshot res = load(previous, files, Collections.emptyMap(), changes);
+    DGMetrics.record(DGMetrics.LOAD_INDEX, start);
+    return res;
+  }
+
+  @NotNull
+  private Snapshot loadFiles(@NotNull Snapshot previous, @NotNull Map<VirtualFile, Pending> pending, @NotNull List<Change> changes) {
+    long start = DGMetrics.start();
+    List<VirtualFile> reload = new ArrayList<>();
+    Map<VirtualFile, List<TagEdit>> edits = new HashMap<>();
+    pending.forEach((file, p) -> {
+      if (p.reload) {
+        reload.add(file);
+      }
+      else {
+        edits.put(file, p.edits);
+      }
+    });
+    Snapshot res = load(previous, reload, edits, changes);
+    DGMetrics.record(DGMetrics.LOAD_FILES, start);
+    return res;
+  }
+
+  /**
+   * Patches segments of files with tag edits, re-reads the other files from the index.
+   * Files which are no longer config files lose their segments, edited files without a segment are re-read.
+   */
+  @NotNull
+  private Snapshot load(@NotNull Snapshot previous, @NotNull Collection<VirtualFile> files, @NotNull Map<VirtualFile, List<TagEdit>> edits,
+                        @NotNull List<Change> changes) {
+    DGModules modules = DGModules.getInstance(myProject);
+    Map<VirtualFile, Segment<DGTestDataSource>> dataSources = previous.myDataSourceFiles;
+    Map<VirtualFile, Segment<DGTestDriver>> drivers = previous.myDriverFiles;
+    Map<VirtualFile, Segment<DGTestArtifact>> artifacts = previous.myArtifactFiles;
+    List<VirtualFile> reload = new ArrayList<>(files);
+    for (Map.Entry<VirtualFile, List<TagEdit>> e : edits.entrySet()) {
+      VirtualFile file = e.getKey();
+      if (!file.isValid()) {
+        reload.add(file);
+      }
+      else if (dataSources.containsKey(file)) {
+        dataSources = patchFile(DATA_SOURCES, dataSources, file, e.getValue(), changes);
+      }
+      else if (drivers.containsKey(file)) {
+        drivers = patchFile(DRIVERS, drivers, file, e.getValue(), changes);
+      }
+      else if (artifacts.containsKey(file)) {
+        artifacts = patchFile(ARTIFACTS, artifacts, file, e.getValue(), changes);
+      }
+      else {
+        reload.add(file);
+      }
+    }
+    for (VirtualFile file : reload) {
+      ProgressManager.checkCanceled();
+      Kind kind = file.isValid() ? modules.getConfigKind(file) : null;
+      List<Entry> entries = kind == null ? null : DGConfigIndex.getEntries(myProject, file);
+      if (kind != null) rememberLength(file);
+      dataSources = loadFile(DATA_SOURCES, dataSources, file, kind == Kind.DATA_SOURCE ? entries : null, changes);
+      drivers = loadFile(DRIVERS, drivers, file, kind == Kind.DRIVER ? entries : null, changes);
+      artifacts = loadFile(ARTIFACTS, artifacts, file, kind == Kind.ARTIFACT ? entries : null, changes);
+    }
+    return update(previous, dataSources, drivers, artifacts, changes);
+  }
+
+  /**
+   * The index has the last committed text, so the first PSI event after a re-read may already be patched.
+   */
+  private void rememberLength(@NotNull VirtualFile file) {
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    if (document != null) {
+      myLengths.put(file, PsiDocumentManager.getInstance(myProject).getLastCommittedText(document).length());
+    }
+    else {
+      myLengths.remove(file);
+    }
+  }
+
+  /**
+   * Returns {@code segments} itself unless an edit changed items of the file's segment.
+   */
+  @NotNull
+  private <T extends ConfigItem> Map<VirtualFile, Segment<T>> patchFile(@NotNull Loader<T> loader, @NotNull Map<VirtualFile, Segment<T>> segments,
+                                                                        @NotNull VirtualFile file, @NotNull List<TagEdit> edits,
+                                                                        @NotNull List<Change> changes) {
+    Segment<T> old = segments.get(file);
+    long stamp = getStamp(myProject, file);
+    Segment<T> updated = old;
+    for (TagEdit edit : edits) {
+      updated = loader.patch(updated, file, edit, stamp, myStrings, changes);
+    }
+    if (updated == old) return segments;
+    Map<VirtualFile, Segment<T>> res = new LinkedHashMap<>(segments);
+    res.put(file, updated);
+    return res;
+  }
+
+  /**
+   * Returns {@code segments} itself unless the file's segment is added, removed or replaced.
+   */
+  @NotNull
+  private <T extends ConfigItem> Map<VirtualFile, Segment<T>> loadFile(@NotNull Loader<T> loader, @NotNull Map<VirtualFile, Segment<T>> segments,
+                                                                       @NotNull VirtualFile file, @Nullable List<Entry> entries,
+                                                                       @NotNull List<Change> changes) {
+    Segment<T> old = segments.get(file);
+    if (old == null && entries == null) return segments;
+    Segment<T> updated = entries == null ? null : loader.update(old, file, entries, getStamp(myProject, file), myStrings, changes);
+    if (updated == old) return segments;
+    Map<VirtualFile, Segment<T>> res = new LinkedHashMap<>(segments);
+    if (updated != null) {
+      res.put(file, updated);
+    }
+    else {
+      res.remove(file);
+      changes.add(new Change(old.config, old.items, Collections.emptyList()));
+    }
+    return res;
+  }
+
+  /**
+   * The previous snapshot stays in place while no item changed, otherwise the stamp moves.
+   */
+  @NotNull
+  private Snapshot update(@NotNull Snapshot previous, @NotNull Map<VirtualFile, Segment<DGTestDataSource>> dataSources,
+                          @NotNull Map<VirtualFile, Segment<DGTestDriver>> drivers,
+                          @NotNull Map<VirtualFile, Segment<DGTestArtifact>> artifacts, @NotNull List<Change> changes) {
+    if (changes.isEmpty() && previous.stamp >= 0) return previous;
+    return new Snapshot(previous.stamp + 1, dataSources, drivers, artifacts, previous);
+  }
+
+  /**
+   * Whether a snapshot has been built, either by {@link DGWarmUpActivity} or by the first reader.
+   * Callers which must not pay for the cold build, like action updates, check it first.
+   */
+  public boolean isWarm() {
+    return myState.snapshot.stamp >= 0;
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  private void publish(@NotNull Change change) {
+    Set<String> oldNames = ContainerUtil.map2Set(change.oldItems, ConfigItem::getName);
+    Set<String> newNames = ContainerUtil.map2Set(change.newItems, ConfigItem::getName);
+    List<ConfigItem> added = new ArrayList<>();
+    List<ConfigItem> changed = new ArrayList<>();
+    for (ConfigItem item : change.newItems) {
+      (oldNames.contains(item.getName()) ? changed : added).add(item);
+    }
+    List<ConfigItem> removed = ContainerUtil.filter(change.oldItems, i -> !newNames.contains(i.getName()));
+    myProject.getMessageBus().syncPublisher(TOPIC).itemsChanged(change.file, added, removed, changed);
+  }
+
+  private record State(@NotNull Snapshot snapshot, long inputs, long structure) {
+  }
+
+  /**
+   * Work for the next reader: a re-read of the file from the index, or tag edits in the order they were made.
+   */
+  private record Pending(boolean reload, @NotNull List<TagEdit> edits) {
+    /**
+     * Too many edits are not worth keeping their texts, the file is re-read instead.
+     */
+    @NotNull
+    Pending append(@NotNull TagEdit edit) {
+      if (reload || edits.size() >= MAX_EDITS) return RELOAD;
+      List<TagEdit> res = new ArrayList<>(edits.size() + 1);
+      res.addAll(edits);
+      res.add(edit);
+      return new Pending(false, res);
+    }
+  }
+
+  /**
+   * A change inside one top-level tag.
+   *
+   * @param offset start of the tag, the change does not move it
+   * @param delta  change of the file length
+   * @param text   text of the tag after the change
+   */
+  record TagEdit(int offset, int delta, @NotNull String text) {
+  }
+
+  /**
+   * Items of a file replaced by a reload, in document order.
+   */
+  private record Change(@NotNull ConfigFile<?> file, @NotNull List<? extends ConfigItem> oldItems, @NotNull List<? extends ConfigItem> newItems) {
+  }
+
+  public interface Listener extends EventListener {
+    /**
+     * Fired after a reload replaced items of a file, {@code changed} holds the new versions of surviving items.
+     */
+    void itemsChanged(@NotNull ConfigFile<?> file, @NotNull List<ConfigItem> added, @NotNull List<ConfigItem> removed, @NotNull List<ConfigItem> changed);
+  }
+
+  /**
+   * Turns index entries of one {@link Kind} into items.
+   *
+   * @param uniqueIds ids are not shared with other items, so they are not interned
+   */
+  record Loader<T extends ConfigItem>(@NotNull ConfigParser<T, ?> parser, @NotNull Function<? super T, String> id, boolean uniqueIds) {
+    /**
+     * Matches entries against the items of {@code old}: the unchanged head and tail keep their items and only
+     * move their locators to the new offsets, items in between are replaced. Returns {@code old} when no item changed.
+     */
+    @NotNull
+    Segment<T> update(@Nullable Segment<T> old, @NotNull VirtualFile file, @NotNull List<Entry> entries, long stamp,
+                      @NotNull DGConfigStrings strings, @NotNull List<Change> changes) {
+      List<T> oldItems = old == null ? Collections.emptyList() : old.items;
+      int n = oldItems.size();
+      int m = entries.size();
+      int head = 0;
+      while (head < n && head < m && sameFields(oldItems.get(head), entries.get(head))) head++;
+      int tail = 0;
+      while (tail < n - head && tail < m - head && sameFields(oldItems.get(n - 1 - tail), entries.get(m - 1 - tail))) tail++;
+      for (int i = 0; i < head; i++) {
+        oldItems.get(i).getLocator().moveTo(entries.get(i).offset, stamp);
+      }
+      for (int i = 1; i <= tail; i++) {
+        oldItems.get(n - i).getLocator().moveTo(entries.get(m - i).offset, stamp);
+      }
+      if (old != null && head + tail == n && n == m) return old;
+
+      List<T> added = new ArrayList<>(m - head - tail);
+      for (int i = head; i < m - tail; i++) {
+        ProgressManager.checkCanceled();
+        Entry entry = entries.get(i);
+        String[] fields = entry.fields.clone();
+        strings.intern(fields, uniqueIds ? 1 : 0);
+        added.add(parser.internalize(fields, new DGTagLocator(file, entry.offset, stamp)));
+      }
+      List<T> items = new ArrayList<>(m);
+      items.addAll(oldItems.subList(0, head));
+      items.addAll(added);
+      items.addAll(oldItems.subList(n - tail, n));
+      Segment<T> res = create(file.getName(), items);
+      List<T> removed = oldItems.subList(head, n - tail);
+      if (!removed.isEmpty() || !added.isEmpty()) changes.add(new Change(res.config, removed, added));
+      return res;
+    }
+
+    /**
+     * Replaces items of the edited tag with the ones parsed from its new text, locators of the items after it move
+     * by the length change. Returns {@code old} when the tag has the same items.
+     */
+    @NotNull
+    Segment<T> patch(@NotNull Segment<T> old, @NotNull VirtualFile file, @NotNull TagEdit edit, long stamp,
+                     @NotNull DGConfigStrings strings, @NotNull List<Change> changes) {
+      List<T> oldItems = old.items;
+      int n = oldItems.size();
+      int oldEnd = edit.offset + edit.text.length() - edit.delta;
+      int from = 0;
+      while (from < n && oldItems.get(from).getLocator().getOffset() < edit.offset) from++;
+      int to = from;
+      while (to < n && oldItems.get(to).getLocator().getOffset() < oldEnd) to++;
+      List<T> parsed = parser.parseTag(edit.text, edit.offset, file, stamp);
+      boolean same = parsed.size() == to - from;
+      for (int i = 0; same && i < parsed.size(); i++) {
+        same = Arrays.equals(parser.externalize(oldItems.get(from + i)), parser.externalize(parsed.get(i)));
+      }
+      for (int i = 0; i < from; i++) {
+        DGTagLocator locator = oldItems.get(i).getLocator();
+        locator.moveTo(locator.getOffset(), stamp);
+      }
+      for (int i = to; i < n; i++) {
+        DGTagLocator locator = oldItems.get(i).getLocator();
+        locator.moveTo(locator.getOffset() + edit.delta, stamp);
+      }
+      if (same) {
+        for (int i = 0; i < parsed.size(); i++) {
+          oldItems.get(from + i).getLocator().moveTo(parsed.get(i).getLocator().getOffset(), stamp);
+        }
+        return old;
+      }
+
+      List<T> added = new ArrayList<>(parsed.size());
+      for (T item : parsed) {
+        String[] fields = parser.externalize(item);
+        strings.intern(fields, uniqueIds ? 1 : 0);
+        added.add(parser.internalize(fields, item.getLocator()));
+      }
+      List<T> items = new ArrayList<>(n - (to - from) + added.size());
+      items.addAll(oldItems.subList(0, from));
+      items.addAll(added);
+      items.addAll(oldItems.subList(to, n));
+      Segment<T> res = create(file.getName(), items);
+      changes.add(new Change(res.config, oldItems.subList(from, to), added));
+      return res;
+    }
+
+    private boolean sameFields(@NotNull T item, @NotNull Entry entry) {
+      return Arrays.equals(parser.externalize(item), entry.fields);
+    }
+
+    @NotNull
+    Segment<T> create(@NotNull String fileName, @NotNull List<T> items) {
+      return new Segment<>(parser.create(fileName, items), items);
+    }
+  }
+
+  /**
+   * Items of one config file in document order.
+   */
+  record Segment<T extends ConfigItem>(@NotNull ConfigFile<T> config, @NotNull List<T> items) {
+  }
+
+  /**
+   * Items of all config files, kept in per-file segments so a reload only replaces segments of changed files.
+   * Id maps are built along with the snapshot, flat lists, the driver graph, the name table and the completion pool
+   * on first use. Id maps, the graph and the pool are carried over from the previous snapshot while their segments are the same.
+   */
+  public static final class Snapshot {
+    /**
+     * Moves only when items are added, removed or changed, not on every edit of a config file.
+     */
+    public final long stamp;
+    private final Map<VirtualFile, Segment<DGTestDataSource>> myDataSourceFiles;
+    private final Map<VirtualFile, Segment<DGTestDriver>> myDriverFiles;
+    private final Map<VirtualFile, Segment<DGTestArtifact>> myArtifactFiles;
+    private final Map<String, List<DGTestDataSource>> myDataSourcesById;
+    private final Map<String, List<DGTestDriver>> myDriversById;
+    private final Map<String, List<DGTestArtifact>> myArtifactsById;
+    private volatile List<DGTestDataSource> myDataSources;
+    private volatile List<DGTestDriver> myDrivers;
+    private volatile List<DGTestArtifact> myArtifacts;
+    private volatile DGDriverGraph myDriverGraph;
+    private volatile DGConfigNameTable myNames;
+    private volatile DGCompletionPool myCompletionPool;
+
+    Snapshot(long stamp, @NotNull Map<VirtualFile, Segment<DGTestDataSource>> dataSources,
+             @NotNull Map<VirtualFile, Segment<DGTestDriver>> drivers,
+             @NotNull Map<VirtualFile, Segment<DGTestArtifact>> artifacts, @Nullable Snapshot previous) {
+      this.stamp = stamp;
+      myDataSourceFiles = dataSources;
+      myDriverFiles = drivers;
+      myArtifactFiles = artifacts;
+      boolean sameDataSources = previous != null && sameSegments(previous.myDataSourceFiles, dataSources);
+      boolean sameDrivers = previous != null && sameSegments(previous.myDriverFiles, drivers);
+      boolean sameArtifacts = previous != null && sameSegments(previous.myArtifactFiles, artifacts);
+      myDataSourcesById = sameDataSources ? previous.myDataSourcesById : byId(dataSources, DATA_SOURCES.id());
+      myDriversById = sameDrivers ? previous.myDriversById : byId(drivers, DRIVERS.id());
+      myArtifactsById = sameArtifacts ? previous.myArtifactsById : byId(artifacts, ARTIFACTS.id());
+      if (sameDrivers) {
+        myDriverGraph = previous.myDriverGraph;
+        if (sameArtifacts) myCompletionPool = previous.myCompletionPool;
+      }
+    }
+
+    @NotNull
+    private static <T extends ConfigItem> Map<String, List<T>> byId(@NotNull Map<VirtualFile, Segment<T>> segments,
+                                                                    @NotNull Function<? super T, String> id) {
+      Map<String, List<T>> res = new HashMap<>();
+      for (Segment<T> segment : segments.values()) {
+        ProgressManager.checkCanceled();
+        for (T item : segment.items) {
+          res.computeIfAbsent(id.apply(item), k -> new SmartList<>()).add(item);
+        }
+      }
+      return res;
+    }
+
+    private static boolean sameSegments(@NotNull Map<VirtualFile, ? extends Segment<?>> a, @NotNull Map<VirtualFile, ? extends Segment<?>> b) {
+      if (a.size() != b.size()) return false;
+      for (Map.Entry<VirtualFile, ? extends Segment<?>> e : a.entrySet()) {
+        if (b.get(e.getKey()) != e.getValue()) return false;
+      }
+      return true;
+    }
+
+    @NotNull
+    public List<DGTestDataSource> getDataSources() {
+      List<DGTestDataSource> res = myDataSources;
+      if (res == null) myDataSources = res = flatten(myDataSourceFiles);
+      return res;
+    }
+
+    @NotNull
+    public List<DGTestDriver> getDrivers() {
+      List<DGTestDriver> res = myDrivers;
+      if (res == null) myDrivers = res = flatten(myDriverFiles);
+      return res;
+    }
+
+    @NotNull
+    public List<DGTestArtifact> getArtifacts() {
+      List<DGTestArtifact> res = myArtifacts;
+      if (res == null) myArtifacts = res = flatten(myArtifactFiles);
+      return res;
+    }
+
+    @NotNull
+    public List<DGTestDataSource> getDataSources(@NotNull String uuid) {
+      return myDataSourcesById.getOrDefault(uuid, Collections.emptyList());
+    }
+
+    @NotNull
+    public List<DGTestDriver> getDrivers(@NotNull String id) {
+      return myDriversById.getOrDefault(id, Collections.emptyList());
+    }
+
+    @NotNull
+    public List<DGTestArtifact> getArtifacts(@NotNull String id) {
+      return myArtifactsById.getOrDefault(id, Collections.emptyList());
+    }
+
+    @NotNull
+    public List<DGTestArtifact> getArtifact(@NotNull String id, @NotNull String version) {
+      return ContainerUtil.filter(getArtifacts(id), artifact -> version.equals(artifact.version));
+    }
+
+    @NotNull
+    public DGDriverGraph getDriverGraph() {
+      DGDriverGraph graph = myDriverGraph;
+      if (graph == null) myDriverGraph = graph = DGDriverGraph.build(getDrivers());
+      return graph;
+    }
+
+    @NotNull
+    public DGConfigNameTable getNames() {
+      DGConfigNameTable names = myNames;
+      if (names == null) {
+        myNames = names = new DGConfigNameTable(JBIterable.<ConfigItem>from(getDataSources()).append(getDrivers()).append(getArtifacts()));
+      }
+      return names;
+    }
+
+    @NotNull
+    DGCompletionPool getCompletionPool() {
+      DGCompletionPool pool = myCompletionPool;
+      if (pool == null) myCompletionPool = pool = new DGCompletionPool(getDrivers(), getArtifacts());
+      return pool;
+    }
+
+    @NotNull
+    private static <T extends ConfigItem> List<T> flatten(@NotNull Map<VirtualFile, Segment<T>> segments) {
+      List<T> res = new ArrayList<>();
+      for (Segment<T> segment : segments.values()) {
+        ProgressManager.checkCanceled();
+        res.addAll(segment.items);
+      }
+      return Collections.unmodifiableList(res);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestUtils.ConfigItem;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.SmartList;
+import com.intellij.util.indexing.IdFilter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Sorted names of config items with per-file name lists, so scope and {@link IdFilter} are checked once per file.
+ */
+public final class DGConfigNameTable {
+  private final String[] myNames;
+  private final Map<String, List<ConfigItem>> myItems;
+  private final Map<VirtualFile, String[]> myFileNames;
+
+  public DGConfigNameTable(@NotNull Iterable<? extends ConfigItem> items) {
+    Map<String, List<ConfigItem>> byName = new HashMap<>();
+    Map<VirtualFile, Set<String>> byFile = new LinkedHashMap<>();
+    for (ConfigItem item : items) {
+      ProgressManager.checkCanceled();
+      byName.computeIfAbsent(item.getName(), k -> new SmartList<>()).add(item);
+      byFile.computeIfAbsent(item.getLocator().file, k -> new HashSet<>()).add(item.getName());
+    }
+    myItems = byName;
+    myNames = sorted(byName.keySet());
+    myFileNames = new LinkedHashMap<>();
+    byFile.forEach((file, names) -> myFileNames.put(file, sorted(names)));
+  }
+
+  private static String @NotNull [] sorted(@NotNull Collection<String> names) {
+    String[] res = ArrayUtil.toStringArray(names);
+    Arrays.sort(res);
+    return res;
+  }
+
+  public boolean processNames(@NotNull Processor<? super String> processor, @NotNull GlobalSearchScope scope, @Nullable IdFilter filter) {
+    List<String[]> accepted = new ArrayList<>();
+    for (Map.Entry<VirtualFile, String[]> entry : myFileNames.entrySet()) {
+      if (accepts(entry.getKey(), scope, filter)) accepted.add(entry.getValue());
+    }
+    if (accepted.size() == myFileNames.size()) return process(myNames, processor);
+    if (accepted.size() == 1) return process(accepted.get(0), processor);
+    Set<String> seen = new HashSet<>();
+    for (String[] names : accepted) {
+      for (String name : names) {
+        if (seen.add(name) && !processor.process(name)) return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean processItems(@NotNull String name, @NotNull GlobalSearchScope scope, @Nullable IdFilter filter,
+                              @NotNull Processor<? super ConfigItem> processor) {
+    for (ConfigItem item : myItems.getOrDefault(name, Collections.emptyList())) {
+      if (accepts(item.getLocator().file, scope, filter) && !processor.process(item)) return false;
+    }
+    return true;
+  }
+
+  private static boolean process(String @NotNull [] names, @NotNull Processor<? super String> processor) {
+    for (String name : names) {
+      if (!processor.process(name)) return false;
+    }
+    return true;
+  }
+
+  private static boolean accepts(@NotNull VirtualFile file, @NotNull GlobalSearchScope scope, @Nullable IdFilter filter) {
+    if (filter != null && file instanceof VirtualFileWithId f && !filter.containsFileId(f.getId())) return false;
+    return scope.contains(file);
+  }
+}
@@ -1,7 +1,6 @@
 package com.github.kassak.dg;
 
 import com.github.kassak.dg.DGTestArtifacts.DGTestArtifact;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
@@ -57,7 +56,7 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
   }
 
   @NotNull
-  private ElementPattern<XmlTag> driverRefValue() {
+  static ElementPattern<XmlTag> driverRefValue() {
     return xmlTag().withName("driver-ref")
       .inFile(PlatformPatterns.psiFile().withName(PlatformPatterns.string().with(
         new PatternCondition<String>("DGTestDataSources.isTestDataSource") {
@@ -69,28 +68,28 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
   }
 
   @NotNull
-  private ElementPattern<XmlAttributeValue> driverBaseValue() {
+  static ElementPattern<XmlAttributeValue> driverBaseValue() {
     return xmlAttributeValue("based-on")
       .withSuperParent(2, xmlTag().withName("driver"))
       .inFile(PlatformPatterns.psiFile().withName(isTestDatabaseDrivers()));
   }
 
   @NotNull
-  private ElementPattern<XmlAttributeValue> driverArtifactIdValue() {
+  static ElementPattern<XmlAttributeValue> driverArtifactIdValue() {
     return xmlAttributeValue("id")
       .withSuperParent(2, xmlTag().withName("artifact"))
       .inFile(PlatformPatterns.psiFile().withName(isTestDatabaseDrivers()));
   }
 
   @NotNull
-  private ElementPattern<XmlAttributeValue> driverArtifactVersionValue() {
+  static ElementPattern<XmlAttributeValue> driverArtifactVersionValue() {
     return xmlAttributeValue("version")
       .withSuperParent(2, xmlTag().withName("artifact"))
       .inFile(PlatformPatterns.psiFile().withName(isTestDatabaseDrivers()));
   }
 
   @NotNull
-  private StringPattern isTestDatabaseDrivers() {
+  private static StringPattern isTestDatabaseDrivers() {
     return PlatformPatterns.string().with(
       new PatternCondition<String>("DGTestDrivers.isTestDatabaseDrivers") {
         @Override
@@ -126,9 +125,22 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
     @NotNull
     @Override
     public ResolveResult @NotNull [] multiResolve(boolean b) {
+      long start = DGMetrics.start();
+      try {
+        return doMultiResolve();
+      }
+      finally {
+        DGMetrics.record(DGMetrics.RESOLVE, start);
+      }
+    }
+
+    private ResolveResult @NotNull [] doMultiResolve() {
       String ver = getCanonicalText();
-      return getArtifacts()
-        .filter(a -> ver.equals(a.version))
+      String id = getId();
+      JBIterable<DGTestArtifact> artifacts = id == null
+        ? getArtifacts().filter(a -> ver.equals(a.version))
+        : JBIterable.from(getSnapshot().getArtifact(id, ver));
+      return artifacts
         .filterMap(a -> {
           XmlTag source = a.getSource();
           return source == null ? null : (ResolveResult)new PsiElementResolveResult(source);
@@ -141,29 +153,45 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
       return null;
     }
 
+    /**
+     * Variants come from {@link DGConfigCompletionContributor}.
+     */
     @NotNull
     @Override
     public Object @NotNull [] getVariants() {
-      return getArtifacts()
-        .map(a -> (Object) LookupElementBuilder.create(a.version).withIcon(a.getIcon()))
-        .toArray(ArrayUtil.EMPTY_OBJECT_ARRAY);
+      return ArrayUtil.EMPTY_OBJECT_ARRAY;
     }
 
     @NotNull
     private JBIterable<DGTestArtifact> getArtifacts() {
-      JBIterable<DGTestArtifact> artifacts = DGTestArtifacts.list(getElement().getProject())
-        .flatten(DGTestArtifacts::getItems);
+      DGConfigModel.Snapshot snapshot = getSnapshot();
       String id = getId();
-      return id == null ? artifacts : artifacts.filter(a -> id.equals(a.id));
+      return JBIterable.from(id == null ? snapshot.getArtifacts() : snapshot.getArtifacts(id));
     }
 
+    @Nullable
     private String getId() {
-      //todo: go through bases
-      XmlTag tag = PsiTreeUtil.getParentOfType(getElement(), XmlTag.class);
-      return tag == null ? null : tag.getAttributeValue("id");
+      return findArtifactId(getElement(), getSnapshot());
     }
   }
 
+  /**
+   * Artifact id of the artifact tag containing {@code element}, falling back to the one its driver inherits.
+   */
+  @Nullable
+  static String findArtifactId(@NotNull PsiElement element, @NotNull DGConfigModel.Snapshot snapshot) {
+    XmlTag tag = PsiTreeUtil.getParentOfType(element, XmlTag.class);
+    if (tag == null) return null;
+    String id = DGTestArtifacts.getArtifactId(tag, null);
+    if (id != null) return id;
+    XmlTag driver = tag.getParentTag();
+    String driverId = driver == null ? null : driver.getAttributeValue("id");
+    String parentId = driver == null ? null : driver.getAttributeValue("based-on");
+    DGDriverGraph graph = snapshot.getDriverGraph();
+    if (driverId != null && graph.contains(driverId)) return graph.getArtifactName(driverId);
+    return parentId == null ? null : graph.getArtifactName(parentId);
+  }
+
   private static class DGArtifactIdAttributeReference extends AttrValueReference implements PsiPolyVariantReference {
     public DGArtifactIdAttributeReference(@NotNull XmlAttributeValue element) {
       super(element);
@@ -178,15 +206,19 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
     @NotNull
     @Override
     public ResolveResult @NotNull [] multiResolve(boolean b) {
+      long start = DGMetrics.start();
       String id = getCanonicalText();
-      return DGTestArtifacts.list(getElement().getProject())
-        .flatten(DGTestArtifacts::getItems)
-        .filter(a -> id.equals(a.id))
-        .filterMap(a -> {
-          XmlTag source = a.getSource();
-          return source == null ? null : (ResolveResult)new PsiElementResolveResult(source);
-        })
-        .toArray(ResolveResult.EMPTY_ARRAY);
+      try {
+        return JBIterable.from(getSnapshot().getArtifacts(id))
+          .filterMap(a -> {
+            XmlTag source = a.getSource();
+            return source == null ? null : (ResolveResult)new PsiElementResolveResult(source);
+          })
+          .toArray(ResolveResult.EMPTY_ARRAY);
+      }
+      finally {
+        DGMetrics.record(DGMetrics.RESOLVE, start);
+      }
     }
 
     @Override
@@ -194,24 +226,33 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
       return null;
     }
 
+    /**
+     * Variants come from {@link DGConfigCompletionContributor}.
+     */
     @NotNull
     @Override
     public Object @NotNull [] getVariants() {
-      return DGTestArtifacts.list(getElement().getProject())
-        .flatten(DGTestArtifacts::getItems)
-        .map(a -> (Object) LookupElementBuilder.create(a.id).withIcon(a.getIcon()))
-        .toArray(ArrayUtil.EMPTY_OBJECT_ARRAY);
+      return ArrayUtil.EMPTY_OBJECT_ARRAY;
     }
   }
 
   private interface DGDriverReferenceMixin extends PsiReference {
+    @NotNull
+    default DGConfigModel.Snapshot getSnapshot() {
+      return DGConfigModel.getInstance(getElement().getProject()).getSnapshot();
+    }
+
     @Override
     default @Nullable PsiElement resolve() {
-      String text = getCanonicalText();
-      DGTestDrivers.DGTestDriver driver = DGTestDrivers.list(getElement().getProject())
-        .flatten(DGTestDrivers::getItems)
-        .find(d -> text.equals(d.getName()));
-      return driver == null ? null : driver.getSource();
+      long start = DGMetrics.start();
+      try {
+        return JBIterable.from(getSnapshot().getDrivers(getCanonicalText()))
+          .filterMap(DGTestDrivers.DGTestDriver::getSource)
+          .first();
+      }
+      finally {
+        DGMetrics.record(DGMetrics.RESOLVE, start);
+      }
     }
 
     @Override
@@ -220,12 +261,13 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
       return null;
     }
 
+    /**
+     * Variants come from {@link DGConfigCompletionContributor}.
+     */
     @NotNull
     @Override
     default Object @NotNull [] getVariants() {
-      return DGTestDrivers.list(getElement().getProject()).flatten(DGTestDrivers::getItems)
-        .map(d -> (Object)LookupElementBuilder.create(d.getName()).withIcon(d.getIcon()))
-        .toArray(ArrayUtil.EMPTY_OBJECT_ARRAY);
+      return ArrayUtil.EMPTY_OBJECT_ARRAY;
     }
   }
 
@@ -236,6 +278,11 @@ public class DGConfigReferenceContributor extends PsiReferenceContributor {
       myElement = element;
     }
 
+    @NotNull
+    public DGConfigModel.Snapshot getSnapshot() {
+      return DGConfigModel.getInstance(myElement.getProject()).getSnapshot();
+    }
+
     @Override
     public @NotNull XmlAttributeValue getElement() {
       return myElement;
@@ -0,0 +1,28 @@
+package com.github.kassak.dg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates strings repeated across config items: DBMS names, versions, driver and artifact ids.
+ * Every index read produces fresh copies of them, and a snapshot keeps tens of thousands of items alive.
+ * {@link DGConfigModel} keeps one under its lock and starts a new one on every full reload,
+ * so strings of removed items do not pile up.
+ */
+final class DGConfigStrings {
+  private final Map<String, String> myStrings = new HashMap<>();
+
+  /**
+   * Replaces the fields starting at {@code from} with their shared copies, in place.
+   */
+  void intern(String @NotNull [] fields, int from) {
+    for (int i = from; i < fields.length; i++) {
+      String s = fields[i];
+      if (s == null) continue;
+      String shared = myStrings.putIfAbsent(s, s);
+      if (shared != null) fields[i] = shared;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Forward-only scanner over config XML text which reports start tags with their depth and offset.
+ * Attributes are extracted on demand, so only the ones we ask for are materialized.
+ * Tolerates half-typed documents: unknown constructs are skipped rather than reported.
+ */
+public final class DGConfigXmlScanner {
+  private final CharSequence myText;
+  private final int myBase;
+  private int myPos;
+  private int myOpenDepth;
+  private boolean myPending;
+
+  private int myTagStart;
+  private int myNameEnd;
+  private int myTagEnd;
+  private int myTagDepth;
+
+  public DGConfigXmlScanner(@NotNull CharSequence text) {
+    this(text, 0, 0);
+  }
+
+  /**
+   * Scans a fragment of a document, like a single tag.
+   *
+   * @param base  offset of the fragment in the document, offsets are reported in the document
+   * @param depth depth of the first tag of the fragment
+   */
+  public DGConfigXmlScanner(@NotNull CharSequence text, int base, int depth) {
+    myText = text;
+    myBase = base;
+    myOpenDepth = depth;
+  }
+
+  /**
+   * Moves to the next start tag. The root tag has depth 0.
+   */
+  public boolean nextTag() {
+    if (myPending) {
+      myPending = false;
+      return true;
+    }
+    int len = myText.length();
+    while (myPos < len) {
+      int lt = StringUtil.indexOf(myText, '<', myPos);
+      if (lt < 0) break;
+      if (startsWith(lt, "<!--")) {
+        myPos = skipPast(lt + 4, "-->");
+      }
+      else if (startsWith(lt, "<![CDATA[")) {
+        myPos = skipPast(lt + 9, "]]>");
+      }
+      else if (startsWith(lt, "<?")) {
+        myPos = skipPast(lt + 2, "?>");
+      }
+      else if (startsWith(lt, "<!")) {
+        myPos = skipPast(lt + 2, ">");
+      }
+      else if (startsWith(lt, "</")) {
+        myPos = skipPast(lt + 2, ">");
+        if (myOpenDepth > 0) myOpenDepth--;
+      }
+      else {
+        int nameEnd = lt + 1;
+        while (nameEnd < len && isNameChar(myText.charAt(nameEnd))) nameEnd++;
+        if (nameEnd == lt + 1) {
+          myPos = lt + 1;
+          continue;
+        }
+        int end = findTagEnd(nameEnd);
+        myTagStart = lt;
+        myNameEnd = nameEnd;
+        myTagEnd = end;
+        myTagDepth = myOpenDepth;
+        if (end >= len || myText.charAt(end - 1) != '/') myOpenDepth++;
+        myPos = end + 1;
+        return true;
+      }
+    }
+    myPos = len;
+    return false;
+  }
+
+  /**
+   * Moves to the next start tag nested deeper than {@code parentDepth}.
+   * Returns false without consuming the tag once the parent is closed.
+   */
+  public boolean nextChild(int parentDepth) {
+    if (!nextTag()) return false;
+    if (myTagDepth > parentDepth) return true;
+    myPending = true;
+    return false;
+  }
+
+  public int getDepth() {
+    return myTagDepth;
+  }
+
+  public int getOffset() {
+    return myBase + myTagStart;
+  }
+
+  public boolean isTag(@NotNull String name) {
+    return myNameEnd - myTagStart - 1 == name.length() && StringUtil.startsWith(myText, myTagStart + 1, name);
+  }
+
+  @NotNull
+  public String getName() {
+    return myText.subSequence(myTagStart + 1, myNameEnd).toString();
+  }
+
+  @Nullable
+  public String getAttribute(@NotNull String name) {
+    int pos = myNameEnd;
+    while (pos < myTagEnd) {
+      while (pos < myTagEnd && !isNameChar(myText.charAt(pos))) pos++;
+      int nameStart = pos;
+      while (pos < myTagEnd && isNameChar(myText.charAt(pos))) pos++;
+      int nameEnd = pos;
+      while (pos < myTagEnd && Character.isWhitespace(myText.charAt(pos))) pos++;
+      if (pos >= myTagEnd || myText.charAt(pos) != '=') continue;
+      pos++;
+      while (pos < myTagEnd && Character.isWhitespace(myText.charAt(pos))) pos++;
+      if (pos >= myTagEnd) break;
+      char quote = myText.charAt(pos);
+      if (quote != '"' && quote != '\'') continue;
+      int valueStart = pos + 1;
+      int valueEnd = StringUtil.indexOf(myText, quote, valueStart, myTagEnd);
+      if (valueEnd < 0) valueEnd = myTagEnd;
+      pos = valueEnd + 1;
+      if (nameEnd - nameStart == name.length() && StringUtil.startsWith(myText, nameStart, name)) {
+        return StringUtil.unescapeXmlEntities(myText.subSequence(valueStart, valueEnd).toString());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Text between the current start tag and the next tag, null for empty tags.
+   */
+  @Nullable
+  public String getText() {
+    int len = myText.length();
+    if (myTagEnd >= len || myText.charAt(myTagEnd - 1) == '/') return null;
+    int end = StringUtil.indexOf(myText, '<', myTagEnd + 1);
+    if (end < 0) end = len;
+    return StringUtil.unescapeXmlEntities(myText.subSequence(myTagEnd + 1, end).toString().trim());
+  }
+
+  private int findTagEnd(int from) {
+    int len = myText.length();
+    char quote = 0;
+    for (int i = from; i < len; i++) {
+      char c = myText.charAt(i);
+      if (quote != 0) {
+        if (c == quote) quote = 0;
+      }
+      else if (c == '"' || c == '\'') {
+        quote = c;
+      }
+      else if (c == '>') {
+        return i;
+      }
+      else if (c == '<') {
+        return i - 1;
+      }
+    }
+    return len;
+  }
+
+  private boolean startsWith(int offset, @NotNull String prefix) {
+    return StringUtil.startsWith(myText, offset, prefix);
+  }
+
+  private int skipPast(int from, @NotNull String terminator) {
+    int idx = StringUtil.indexOf(myText, terminator, from);
+    return idx < 0 ? myText.length() : idx + terminator.length();
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':';
+  }
+}
@@ -1,58 +1,104 @@
 package com.github.kassak.dg;
 
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
 import com.intellij.execution.*;
 import com.intellij.execution.configurations.*;
-import com.intellij.execution.executors.DefaultDebugExecutor;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.process.ProcessOutputType;
-import com.intellij.execution.remote.RemoteConfiguration;
-import com.intellij.execution.remote.RemoteConfigurationType;
 import com.intellij.ide.DataManager;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionPlaces;
 import com.intellij.openapi.actionSystem.AnAction;
-import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.actionSystem.ex.ActionUtil;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
 import com.intellij.openapi.ui.popup.JBPopupListener;
 import com.intellij.openapi.ui.popup.LightweightWindowEvent;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.ui.ColoredListCellRenderer;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.util.ObjectUtils;
+import com.intellij.util.PathsList;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.JBIterable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DGConfigurationExtension extends RunConfigurationExtension {
 
   private static final String DB_FILTER = "db.filter";
+  private static final String DB_FILTER_UUIDS = "db.filter.uuids";
+  private static final String DB_FILTER_UUIDS_FILE = "db.filter.uuids.file";
+  private static final String DB_FILTER_DRIVERS = "db.filter.drivers";
+  private static final String DB_FILTER_DRIVERS_FILE = "db.filter.drivers.file";
+  private static final String DB_FILTER_ARTIFACTS = "db.filter.artifacts";
+  private static final String DB_FILTER_ARTIFACTS_FILE = "db.filter.artifacts.file";
+  private static final int MAX_LIST_PROPERTY_LENGTH = 4096;
   private static final String OVERWRITE_DATA = "idea.tests.overwrite.data";
   private static final String IN_PROCESS_RMI = "idea.rmi.server.in.process";
   private static final String REMOTE_DEBUG = "db.remote.process.debug";
-  private static final String DEBUG_INVITATION = "Remote JDBC process is ready for debug: ";
+  /**
+   * Set on a process handler once the test output reported per data source timings.
+   */
+  public static final Key<Boolean> DATA_SOURCE_TIMINGS = Key.create("DG_DATA_SOURCE_TIMINGS");
+  private static final Key<Long> RUN_STARTED = Key.create("DG_RUN_STARTED");
 
   @Override
-  public <T extends RunConfigurationBase<?>> void updateJavaParameters(@NotNull T configuration, @NotNull JavaParameters parameters, RunnerSettings settings) {
+  public <T extends RunConfigurationBase<?>> void updateJavaParameters(@NotNull T configuration, @NotNull JavaParameters parameters, RunnerSettings settings) throws ExecutionException {
     if (!isApplicableFor(configuration)) return;
+    long start = DGMetrics.start();
+    configuration.putUserData(RUN_STARTED, start);
     Project project = configuration.getProject();
     ParametersList params = parameters.getVMParametersList();
-    if (!params.hasProperty(DB_FILTER)) {
+    DGShardPlanner.Shard shard = configuration.getUserData(DGShardedRun.SHARD);
+    if (shard != null) {
+      params.replaceOrAppend("-D" + DB_FILTER + "=", "-D" + DB_FILTER + "=" + shard.getFilter());
+      defineUuids(shard.uuids(), params);
+    }
+    else if (!params.hasProperty(DB_FILTER)) {
       String filter = getFilter(project);
       params.defineProperty(DB_FILTER, filter);
+      if (filter != null && DGTestSettings.getInstance(project).isResolveUuids()) {
+        defineUuids(project, DGTestHistory.getTestClass(configuration), filter, params);
+      }
+    }
+    DGTestSettings testSettings = DGTestSettings.getInstance(project);
+    if (testSettings.isVerifyDrivers() || testSettings.isMinimalClasspath()) {
+      List<String> uuids = shard == null ? null : shard.uuids();
+      String filter = params.getPropertyValue(DB_FILTER);
+      boolean verify = testSettings.isVerifyDrivers();
+      DGDriverJarVerifier.Inventory inventory = computeWithProgress(project, verify ? "Verifying driver jars" : "Collecting drivers", () -> {
+        DGDriverJarVerifier.Inventory res = collectDrivers(project, uuids, filter);
+        if (verify) DGDriverJarVerifier.verify(res);
+        return res;
+      });
+      if (testSettings.isMinimalClasspath() && inventory.problems.isEmpty()) {
+        trimClasspath(inventory, parameters.getClassPath());
+        defineClosure(inventory, params);
+      }
     }
     if (!params.hasProperty(OVERWRITE_DATA) && DGTestSettings.getInstance(project).isOverwrite()) {
       params.defineProperty(OVERWRITE_DATA, "true");
@@ -63,6 +109,102 @@ public class DGConfigurationExtension extends RunConfigurationExtension {
     if (!params.hasProperty(REMOTE_DEBUG) && DGTestSettings.getInstance(project).isAttachRemote()) {
       params.defineProperty(REMOTE_DEBUG, "true");
     }
+    DGMetrics.record(DGMetrics.RUN_PARAMETERS, start);
+  }
+
+  /**
+   * Passes the uuids matched by the filter, so the test process can skip loading and matching every data source.
+   * Short lists go inline, long ones through a temp file. Data sources which ran longest before come first.
+   */
+  private static void defineUuids(@NotNull Project project, @NotNull String testClass, @NotNull String filter,
+                                  @NotNull ParametersList params) throws ExecutionException {
+    List<String> uuids = ReadAction.compute(() -> DGFilterEngine.getInstance(project).getUuids(filter));
+    if (uuids == null) return;
+    DGTestHistory history = DGTestHistory.getInstance(project);
+    uuids.sort(Comparator.comparingLong((String uuid) -> history.estimate(testClass, uuid)).reversed());
+    defineUuids(uuids, params);
+  }
+
+  /**
+   * Driver closure of the data sources to be tested: the shard ones, the filtered ones or all.
+   */
+  @NotNull
+  private static DGDriverJarVerifier.Inventory collectDrivers(@NotNull Project project, @Nullable List<String> uuids, @Nullable String filter) {
+    return ReadAction.compute(() -> {
+      DGConfigModel.Snapshot snapshot = DGConfigModel.getInstance(project).getSnapshot();
+      List<DGTestDataSource> dataSources =
+        uuids != null ? JBIterable.from(uuids).flatMap(snapshot::getDataSources).toList() :
+        filter != null ? DGFilterEngine.getInstance(project).getTargets(filter) :
+        snapshot.getDataSources();
+      return DGDriverJarVerifier.collect(snapshot, dataSources);
+    });
+  }
+
+  /**
+   * Runs under a modal progress when called on the EDT, since a cold snapshot and jar checks may take a while.
+   */
+  private static <T> T computeWithProgress(@NotNull Project project, @NotNull String title,
+                                           @NotNull ThrowableComputable<T, ExecutionException> computable) throws ExecutionException {
+    if (!ApplicationManager.getApplication().isDispatchThread()) return computable.compute();
+    return ProgressManager.getInstance().runProcessWithProgressSynchronously(computable, title, true, project);
+  }
+
+  /**
+   * Drops driver jars outside the closure, so a focused run does not load every driver.
+   * Skipped when the closure is incomplete, since then it is unknown what the run needs.
+   */
+  static void trimClasspath(@NotNull DGDriverJarVerifier.Inventory inventory, @NotNull PathsList classPath) {
+    Path driversDir = DGDriverJarVerifier.getDriversDir().toAbsolutePath().normalize();
+    for (String entry : new ArrayList<>(classPath.getPathList())) {
+      if (!inventory.isNeeded(Path.of(entry).toAbsolutePath().normalize(), driversDir)) {
+        classPath.remove(entry);
+        DGMetrics.count(DGMetrics.TRIMMED_CLASSPATH);
+      }
+    }
+  }
+
+  private static void defineUuids(@NotNull List<String> uuids, @NotNull ParametersList params) throws ExecutionException {
+    defineList(params, DB_FILTER_UUIDS, DB_FILTER_UUIDS_FILE, uuids);
+  }
+
+  /**
+   * Passes the closure, so the test process sets up only these drivers and their directories.
+   * Artifacts go as {@code id:version}, or as {@code id} when every version is used.
+   */
+  private static void defineClosure(@NotNull DGDriverJarVerifier.Inventory inventory, @NotNull ParametersList params) throws ExecutionException {
+    List<String> artifacts = new ArrayList<>();
+    inventory.artifacts.forEach((id, versions) -> {
+      if (versions.isEmpty()) {
+        artifacts.add(id);
+      }
+      else {
+        for (String version : versions) {
+          artifacts.add(id + ":" + version);
+        }
+      }
+    });
+    defineList(params, DB_FILTER_DRIVERS, DB_FILTER_DRIVERS_FILE, ContainerUtil.sorted(inventory.drivers));
+    defineList(params, DB_FILTER_ARTIFACTS, DB_FILTER_ARTIFACTS_FILE, artifacts);
+  }
+
+  /**
+   * Short lists go inline comma separated, long ones through a temp file, one value per line.
+   */
+  private static void defineList(@NotNull ParametersList params, @NotNull String property, @NotNull String fileProperty,
+                                 @NotNull List<String> values) throws ExecutionException {
+    String joined = String.join(",", values);
+    if (joined.length() <= MAX_LIST_PROPERTY_LENGTH) {
+      params.defineProperty(property, joined);
+      return;
+    }
+    try {
+      File file = FileUtil.createTempFile(property.replace('.', '-'), ".txt", true);
+      FileUtil.writeToFile(file, String.join("\n", values));
+      params.defineProperty(fileProperty, file.getAbsolutePath());
+    }
+    catch (IOException e) {
+      throw new ExecutionException("Cannot write " + property + ": " + e.getMessage(), e);
+    }
   }
 
   private String getFilter(Project project) {
@@ -115,6 +257,10 @@ public class DGConfigurationExtension extends RunConfigurationExtension {
 
   @Override
   public boolean isApplicableFor(@NotNull RunConfigurationBase<?> configuration) {
+    return isDGTestConfiguration(configuration);
+  }
+
+  public static boolean isDGTestConfiguration(@NotNull RunConfiguration configuration) {
     JavaTestConfigurationBase javaConfig = ObjectUtils.tryCast(configuration, JavaTestConfigurationBase.class);
     if (javaConfig == null) return false;
     return Arrays.stream(javaConfig.getModules())
@@ -124,30 +270,66 @@ public class DGConfigurationExtension extends RunConfigurationExtension {
   @Override
   protected void attachToProcess(@NotNull RunConfigurationBase<?> configuration, @NotNull ProcessHandler handler, @Nullable RunnerSettings runnerSettings) {
     super.attachToProcess(configuration, handler, runnerSettings);
+    Long started = configuration.getUserData(RUN_STARTED);
+    if (started != null) {
+      configuration.putUserData(RUN_STARTED, null);
+      handler.addProcessListener(new ProcessAdapter() {
+        @Override
+        public void startNotified(@NotNull ProcessEvent event) {
+          DGMetrics.record(DGMetrics.RUN_TO_START, started);
+        }
+      });
+    }
     final Project project = configuration.getProject();
-    if (!DGTestSettings.getInstance(project).isAttachRemote()) return;
+    String testClass = DGTestHistory.getTestClass(configuration);
+    Map<String, Long> dataSourceStarts = new HashMap<>();
+    DGOutputScanner scanner = new DGOutputScanner((marker, payload) -> {
+      switch (marker) {
+        case DEBUG_INVITATION -> {
+          if (DGTestSettings.getInstance(project).isAttachRemote()) attach(project, handler, payload);
+        }
+        case DATA_SOURCE_STARTED -> dataSourceStarts.put(payload, System.currentTimeMillis());
+        case DATA_SOURCE_FINISHED -> {
+          Long start = dataSourceStarts.remove(payload);
+          if (start != null) recordDuration(project, handler, testClass, payload, System.currentTimeMillis() - start);
+        }
+        case TEST_TIMING -> {
+          int space = payload.lastIndexOf(' ');
+          long millis = space < 0 ? -1 : StringUtil.parseLong(payload.substring(space + 1), -1);
+          if (millis >= 0) recordDuration(project, handler, testClass, payload.substring(0, space).trim(), millis);
+        }
+      }
+    }, DGOutputScanner.Marker.values());
     handler.addProcessListener(new ProcessAdapter() {
       @Override
       public void onTextAvailable(@NotNull ProcessEvent processEvent, @NotNull Key key) {
         if (key != ProcessOutputType.STDOUT) return;
         String text = processEvent.getText();
-        if (text == null || !text.startsWith(DEBUG_INVITATION)) return;
-        String params = text.substring(DEBUG_INVITATION.length());
-        attach(project, params);
+        if (text == null) return;
+        synchronized (scanner) {
+          scanner.feed(text);
+        }
+      }
+
+      @Override
+      public void processTerminated(@NotNull ProcessEvent event) {
+        synchronized (scanner) {
+          scanner.flush();
+        }
       }
     });
   }
 
-  private void attach(Project project, String params) {
+  private static void recordDuration(@NotNull Project project, @NotNull ProcessHandler handler, @NotNull String testClass,
+                                     @NotNull String uuid, long millis) {
+    handler.putUserData(DATA_SOURCE_TIMINGS, Boolean.TRUE);
+    DGTestHistory.getInstance(project).record(testClass, uuid, millis);
+  }
+
+  private void attach(Project project, ProcessHandler handler, String params) {
     String port = extractPort(params);
     if (port == null) return;
-    ConfigurationFactory factory = RemoteConfigurationType.getInstance().getConfigurationFactories()[0];
-    RunnerAndConfigurationSettings settings = RunManager.getInstance(project).createConfiguration("remote jdbc debug at " + port, factory);
-    RemoteConfiguration remote = (RemoteConfiguration)settings.getConfiguration();
-    remote.PORT = port;
-    JFrame frame = WindowManager.getInstance().getFrame(project);
-    DataContext context = DataManager.getInstance().getDataContext(frame);
-    ExecutorRegistryImpl.RunnerHelper.run(project, remote, settings, context, DefaultDebugExecutor.getDebugExecutorInstance());
+    DGRemoteDebugSessions.getInstance(project).attach(handler, port);
   }
 
   @Nullable
@@ -4,23 +4,29 @@ import com.intellij.database.Dbms;
 import com.intellij.database.util.DbSqlUtil;
 import com.intellij.database.util.SqlDialects;
 import com.intellij.lang.Language;
-import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
 import com.intellij.psi.LanguageSubstitutor;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.sql.dialects.SqlLanguageDialect;
-import com.intellij.util.PairFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DGDialectsSubstitutor extends LanguageSubstitutor {
   private static final Map<String, Dbms> MAPPING = createMapping();
+  private static final PrefixTrie PREFIXES = new PrefixTrie(MAPPING);
+  private static final SimpleModificationTracker FOLDERS_TRACKER = new SimpleModificationTracker();
 
   private static Map<String, Dbms> createMapping() {
     Map<String, Dbms> builder = new LinkedHashMap<>();
@@ -38,6 +44,17 @@ public class DGDialectsSubstitutor extends LanguageSubstitutor {
   @Nullable
   @Override
   public Language getLanguage(@NotNull VirtualFile file, @NotNull Project project) {
+    long start = DGMetrics.start();
+    try {
+      return doGetLanguage(file, project);
+    }
+    finally {
+      DGMetrics.record(DGMetrics.SUBSTITUTOR, start);
+    }
+  }
+
+  @Nullable
+  private static Language doGetLanguage(@NotNull VirtualFile file, @NotNull Project project) {
     if (!isDGTestData(project, file)) return null;
     Dbms dbms = getDbms(file, project);
     if (dbms == null) return null;
@@ -49,12 +66,41 @@ public class DGDialectsSubstitutor extends LanguageSubstitutor {
   private static Dbms getDbms(@NotNull VirtualFile file, @NotNull Project project) {
     Dbms byName = detectByFileName(file);
     if (byName != null) return byName;
-    for (VirtualFile folder = file.getParent(), top = ProjectFileIndex.getInstance(project).getContentRootForFile(file);
-      folder != null && !folder.equals(top); folder = folder.getParent()) {
-      Dbms byFolder = detectByFolderName(folder);
-      if (byFolder != null) return byFolder;
+    VirtualFile folder = file.getParent();
+    if (folder == null) return null;
+    VirtualFile top = ProjectFileIndex.getInstance(project).getContentRootForFile(file);
+    return getFolderDbms(project, folder, top).orElse(null);
+  }
+
+  /**
+   * Folder dbms is the dbms of the nearest folder named after one below the content root.
+   * Results are cached per folder, so siblings and nested folders reuse the walk.
+   */
+  @NotNull
+  private static Optional<Dbms> getFolderDbms(@NotNull Project project, @NotNull VirtualFile folder, @Nullable VirtualFile top) {
+    ConcurrentMap<VirtualFile, Optional<Dbms>> cache = CachedValuesManager.getManager(project).getCachedValue(project, () ->
+      CachedValueProvider.Result.create(new ConcurrentHashMap<>(), FOLDERS_TRACKER, ProjectRootManager.getInstance(project)));
+    List<VirtualFile> walked = new ArrayList<>();
+    Optional<Dbms> result = Optional.empty();
+    for (VirtualFile cur = folder; cur != null && !cur.equals(top); cur = cur.getParent()) {
+      Optional<Dbms> cached = cache.get(cur);
+      if (cached != null) {
+        DGMetrics.count(DGMetrics.FOLDER_HIT);
+        result = cached;
+        break;
+      }
+      DGMetrics.count(DGMetrics.FOLDER_MISS);
+      walked.add(cur);
+      Dbms byFolder = detectByFolderName(cur);
+      if (byFolder != null) {
+        result = Optional.of(byFolder);
+        break;
+      }
+    }
+    for (VirtualFile cur : walked) {
+      cache.put(cur, result);
     }
-    return null;
+    return result;
   }
 
   private static Dbms detectByFolderName(VirtualFile folder) {
@@ -62,20 +108,72 @@ public class DGDialectsSubstitutor extends LanguageSubstitutor {
   }
 
   private static Dbms detectByFileName(@NotNull VirtualFile file) {
-    return detect(file.getName(), String::startsWith);
+    return detectByFileName(file.getNameSequence());
   }
 
   @Nullable
-  private static Dbms detect(@NotNull String s, @NotNull PairFunction<String, String, Boolean> matcher) {
-    for (Map.Entry<String, Dbms> entry : MAPPING.entrySet()) {
-      if (matcher.fun(s, entry.getKey())) return entry.getValue();
-    }
-    return null;
+  static Dbms detectByFileName(@NotNull CharSequence name) {
+    return PREFIXES.detect(name);
   }
 
   private static boolean isDGTestData(@NotNull Project project, @NotNull VirtualFile file) {
-    Module module = ProjectFileIndex.getInstance(project).getModuleForFile(file);
-    return module != null && module.getName().startsWith("intellij.database") && module.getName().contains("test");
+    return DGModules.getInstance(project).isTestModule(ProjectFileIndex.getInstance(project).getModuleForFile(file));
   }
 
+  /**
+   * Finds the first {@link #MAPPING} entry which is a prefix of a name, walking the name once.
+   */
+  private static final class PrefixTrie {
+    private final Map<Character, PrefixTrie> myChildren = new HashMap<>();
+    private Dbms myDbms;
+    private int myOrder = Integer.MAX_VALUE;
+
+    private PrefixTrie() {
+    }
+
+    PrefixTrie(@NotNull Map<String, Dbms> mapping) {
+      int order = 0;
+      for (Map.Entry<String, Dbms> entry : mapping.entrySet()) {
+        PrefixTrie node = this;
+        for (int i = 0; i < entry.getKey().length(); i++) {
+          node = node.myChildren.computeIfAbsent(entry.getKey().charAt(i), c -> new PrefixTrie());
+        }
+        if (node.myDbms == null) {
+          node.myDbms = entry.getValue();
+          node.myOrder = order;
+        }
+        order++;
+      }
+    }
+
+    @Nullable
+    Dbms detect(@NotNull CharSequence name) {
+      Dbms best = myDbms;
+      int bestOrder = myOrder;
+      PrefixTrie node = this;
+      for (int i = 0; i < name.length(); i++) {
+        node = node.myChildren.get(name.charAt(i));
+        if (node == null) break;
+        if (node.myOrder < bestOrder) {
+          best = node.myDbms;
+          bestOrder = node.myOrder;
+        }
+      }
+      return best;
+    }
+  }
+
+  public static class FoldersListener implements BulkFileListener {
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+      for (VFileEvent event : events) {
+        if (event instanceof VFileMoveEvent ||
+            event instanceof VFileDeleteEvent ||
+            event instanceof VFilePropertyChangeEvent e && e.isRename()) {
+          FOLDERS_TRACKER.incModificationCount();
+          return;
+        }
+      }
+    }
+  }
 }
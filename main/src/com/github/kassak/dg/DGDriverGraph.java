@@ -0,0 +1,112 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestDrivers.DGTestDriver;
+import com.intellij.openapi.progress.ProgressManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Driver inheritance through {@code based-on}, with effective artifacts precomputed for every driver.
+ * Drivers on a cycle keep their own artifact and lose the parent link.
+ */
+public final class DGDriverGraph {
+  private final Map<String, Node> myNodes;
+
+  private DGDriverGraph(@NotNull Map<String, Node> nodes) {
+    myNodes = nodes;
+  }
+
+  @NotNull
+  public static DGDriverGraph build(@NotNull List<DGTestDriver> drivers) {
+    Map<String, Node> nodes = new HashMap<>();
+    for (DGTestDriver driver : drivers) {
+      ProgressManager.checkCanceled();
+      nodes.putIfAbsent(driver.id, new Node(driver));
+    }
+    for (Node node : nodes.values()) {
+      if (!node.resolved) resolve(node, nodes);
+    }
+    return new DGDriverGraph(nodes);
+  }
+
+  /**
+   * Walks up from {@code start} to the first resolved ancestor or a root, then fills the chain top-down.
+   */
+  private static void resolve(@NotNull Node start, @NotNull Map<String, Node> nodes) {
+    List<Node> chain = new ArrayList<>();
+    Set<Node> onChain = new HashSet<>();
+    Node cur = start;
+    while (cur != null && !cur.resolved) {
+      if (!onChain.add(cur)) {
+        for (int i = chain.indexOf(cur); i < chain.size(); i++) {
+          chain.get(i).cyclic = true;
+          chain.get(i).parentId = null;
+        }
+        break;
+      }
+      chain.add(cur);
+      cur = cur.parentId == null ? null : nodes.get(cur.parentId);
+    }
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      Node node = chain.get(i);
+      Node parent = node.parentId == null ? null : nodes.get(node.parentId);
+      if (parent == null) node.parentId = null;
+      if (node.artifactName == null && parent != null) {
+        node.artifactName = parent.artifactName;
+        if (node.artifactVersion == null) node.artifactVersion = parent.artifactVersion;
+      }
+      node.resolved = true;
+    }
+  }
+
+  public boolean contains(@NotNull String id) {
+    return myNodes.containsKey(id);
+  }
+
+  /**
+   * Parent which exists in the graph, null for roots, unknown bases and drivers on a cycle.
+   */
+  @Nullable
+  public String getParent(@NotNull String id) {
+    Node node = myNodes.get(id);
+    return node == null ? null : node.parentId;
+  }
+
+  @Nullable
+  public String getArtifactName(@NotNull String id) {
+    Node node = myNodes.get(id);
+    return node == null ? null : node.artifactName;
+  }
+
+  @Nullable
+  public String getArtifactVersion(@NotNull String id) {
+    Node node = myNodes.get(id);
+    return node == null ? null : node.artifactVersion;
+  }
+
+  /**
+   * Whether the driver is on a {@code based-on} cycle.
+   */
+  public boolean isCyclic(@NotNull String id) {
+    Node node = myNodes.get(id);
+    return node != null && node.cyclic;
+  }
+
+  private static final class Node {
+    final String id;
+    String parentId;
+    String artifactName;
+    String artifactVersion;
+    boolean cyclic;
+    boolean resolved;
+
+    Node(@NotNull DGTestDriver driver) {
+      id = driver.id;
+      parentId = driver.parentId;
+      artifactName = driver.artifactName;
+      artifactVersion = driver.artifactVersion;
+    }
+  }
+}
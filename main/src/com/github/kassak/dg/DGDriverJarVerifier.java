@@ -0,0 +1,285 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestArtifacts.DGTestArtifact;
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SmartList;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks the local jars of the drivers used by the data sources about to be tested, before the test JVM is forked.
+ * Follows data source driver-ref to the driver artifact and looks for its jars in the driver cache directory.
+ * Jar structure is checked in parallel, results of the recently checked jars are kept by path, size and mtime.
+ */
+final class DGDriverJarVerifier {
+  private static final Logger LOG = Logger.getInstance(DGDriverJarVerifier.class);
+  private static final int ZIP_EOCD = 0x06054b50;
+  private static final int ZIP_CEN = 0x02014b50;
+  private static final int ZIP_LOC = 0x04034b50;
+  private static final int EOCD_SIZE = 22;
+  private static final int MAX_EOCD_SEARCH = EOCD_SIZE + 0xFFFF;
+  private static final int MAX_PROBLEMS = 10;
+  private static final int MAX_CACHED_CHECKS = 1024;
+
+  private static final Map<Path, JarCheck> ourChecks = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Path, JarCheck> eldest) {
+      return size() > MAX_CACHED_CHECKS;
+    }
+  };
+  private static final Executor ourExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+    "DG driver jar verifier", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+  private DGDriverJarVerifier() {
+  }
+
+  @NotNull
+  static Path getDriversDir() {
+    return Path.of(PathManager.getConfigPath(), "jdbc-drivers");
+  }
+
+  /**
+   * Driver and artifact closure of the data sources: driver-ref, then based-on up to the root, then artifact,
+   * along with the problems found while resolving it, such as unknown drivers or based-on cycles. Drivers without an artifact take their classpath
+   * from elsewhere and add nothing. Maven coordinates used only by declared artifacts outside the closure are collected for trimming.
+   */
+  @NotNull
+  static Inventory collect(@NotNull DGConfigModel.Snapshot snapshot, @NotNull Collection<DGTestDataSource> dataSources) {
+    DGDriverGraph graph = snapshot.getDriverGraph();
+    Inventory inventory = new Inventory();
+    for (DGTestDataSource ds : dataSources) {
+      String driverRef = ds.driverRef;
+      if (driverRef == null || inventory.drivers.contains(driverRef)) continue;
+      if (!graph.contains(driverRef)) {
+        inventory.problems.add("Data source " + ds.uuid + " refers to unknown driver " + driverRef);
+        continue;
+      }
+      for (String id = driverRef; id != null && inventory.drivers.add(id); id = graph.getParent(id)) {
+        if (graph.isCyclic(id)) inventory.problems.add("Driver " + id + " is based on itself through based-on");
+        String name = graph.getArtifactName(id);
+        if (name == null) continue;
+        String version = graph.getArtifactVersion(id);
+        boolean declared = version != null ? !snapshot.getArtifact(name, version).isEmpty() : !snapshot.getArtifacts(name).isEmpty();
+        if (!declared) {
+          inventory.problems.add("Driver " + id + " uses undeclared artifact " + name + (version == null ? "" : " " + version));
+          continue;
+        }
+        inventory.artifacts.computeIfAbsent(name, k -> new TreeSet<>());
+        if (version != null) inventory.artifacts.get(name).add(version);
+      }
+    }
+    Set<String> needed = new HashSet<>();
+    Set<String> unused = new HashSet<>();
+    for (DGTestArtifact artifact : snapshot.getArtifacts()) {
+      SortedSet<String> versions = inventory.artifacts.get(artifact.id);
+      boolean inClosure = versions != null && (versions.isEmpty() || versions.contains(artifact.version));
+      (inClosure ? needed : unused).addAll(artifact.coordinates);
+    }
+    unused.removeAll(needed);
+    for (String coordinate : unused) {
+      List<String> parts = StringUtil.split(coordinate, ":");
+      if (parts.size() < 3) continue;
+      inventory.unusedJars.computeIfAbsent(parts.get(1) + "/" + parts.get(2), k -> new SmartList<>()).add(parts.get(0));
+    }
+    return inventory;
+  }
+
+  /**
+   * Finds and checks the jars, blocking until all of them are done.
+   */
+  static void verify(@NotNull Inventory inventory) throws ExecutionException {
+    long start = DGMetrics.start();
+    List<String> problems = new ArrayList<>(inventory.problems);
+    List<Path> jars = new ArrayList<>();
+    Path root = getDriversDir();
+    inventory.artifacts.forEach((name, versions) -> {
+      Path artifactDir = root.resolve(name);
+      if (versions.isEmpty()) {
+        if (!Files.isDirectory(artifactDir)) problems.add("Artifact " + name + " is not downloaded");
+        return;
+      }
+      for (String version : versions) {
+        List<Path> found = listJars(artifactDir.resolve(version));
+        if (found.isEmpty()) problems.add("Artifact " + name + " " + version + " is not downloaded");
+        jars.addAll(found);
+      }
+    });
+    List<CompletableFuture<String>> futures = new ArrayList<>(jars.size());
+    for (Path jar : jars) {
+      futures.add(CompletableFuture.supplyAsync(() -> check(jar), ourExecutor));
+    }
+    for (CompletableFuture<String> future : futures) {
+      ProgressManager.checkCanceled();
+      String problem = future.join();
+      if (problem != null) problems.add(problem);
+    }
+    DGMetrics.record(DGMetrics.VERIFY_DRIVERS, start);
+    if (problems.isEmpty()) return;
+    StringBuilder sb = new StringBuilder("Driver jars are missing or broken:");
+    for (String problem : problems.subList(0, Math.min(MAX_PROBLEMS, problems.size()))) {
+      sb.append("\n").append(problem);
+    }
+    if (problems.size() > MAX_PROBLEMS) sb.append("\n... and ").append(problems.size() - MAX_PROBLEMS).append(" more");
+    throw new ExecutionException(sb.toString());
+  }
+
+  @NotNull
+  private static List<Path> listJars(@NotNull Path dir) {
+    if (!Files.isDirectory(dir)) return Collections.emptyList();
+    List<Path> res = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.jar")) {
+      stream.forEach(res::add);
+    }
+    catch (IOException e) {
+      LOG.warn("Cannot list " + dir, e);
+    }
+    return res;
+  }
+
+  /**
+   * Returns the problem with the jar, null if it is fine.
+   */
+  @Nullable
+  private static String check(@NotNull Path jar) {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+    }
+    catch (IOException e) {
+      return jar + ": " + e.getMessage();
+    }
+    long size = attributes.size();
+    long mtime = attributes.lastModifiedTime().toMillis();
+    JarCheck cached;
+    synchronized (ourChecks) {
+      cached = ourChecks.get(jar);
+    }
+    if (cached != null && cached.size == size && cached.mtime == mtime) {
+      DGMetrics.count(DGMetrics.JAR_HIT);
+      return cached.problem;
+    }
+    DGMetrics.count(DGMetrics.JAR_MISS);
+    JarCheck res = new JarCheck(size, mtime);
+    try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+      res.problem = checkZipStructure(channel, size);
+    }
+    catch (IOException e) {
+      res.problem = e.getMessage();
+    }
+    if (res.problem != null) res.problem = jar + ": " + res.problem;
+    synchronized (ourChecks) {
+      ourChecks.put(jar, res);
+    }
+    return res.problem;
+  }
+
+  /**
+   * Truncated downloads lose the end of central directory record or leave it pointing past the data.
+   * The jar is read, not mapped: a mapping outlives the channel until it is collected and on Windows keeps the file
+   * from being replaced when the driver is downloaded again.
+   */
+  @Nullable
+  private static String checkZipStructure(@NotNull FileChannel channel, long size) throws IOException {
+    if (size < EOCD_SIZE) return "too short for a jar";
+    int tailSize = (int)Math.min(size, MAX_EOCD_SEARCH);
+    long tailStart = size - tailSize;
+    ByteBuffer tail = read(channel, tailStart, tailSize);
+    if (tail == null) return "the file was truncated while being checked";
+    int eocd = -1;
+    for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == ZIP_EOCD) {
+        eocd = i;
+        break;
+      }
+    }
+    if (eocd < 0) return "no end of central directory, the file is probably truncated";
+    long cenSize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+    long cenOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+    if (cenOffset + cenSize > tailStart + eocd) return "central directory points past the end of the file";
+    ByteBuffer head = read(channel, 0, 4);
+    if (head == null || head.getInt(0) != ZIP_LOC) return "not a zip file";
+    if (cenSize > 0) {
+      ByteBuffer cen = read(channel, cenOffset, 4);
+      if (cen == null || cen.getInt(0) != ZIP_CEN) return "broken central directory";
+    }
+    return null;
+  }
+
+  /**
+   * Reads {@code size} bytes at {@code position}, null if the file ends before.
+   */
+  @Nullable
+  private static ByteBuffer read(@NotNull FileChannel channel, long position, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) return null;
+    }
+    return buffer;
+  }
+
+  static final class Inventory {
+    final Set<String> drivers = new HashSet<>();
+    final Map<String, SortedSet<String>> artifacts = new TreeMap<>();
+    final List<String> problems = new ArrayList<>();
+    /**
+     * Groups of unused maven coordinates by {@code artifact/version}, the two directories right above a jar in a maven repository.
+     */
+    final Map<String, List<String>> unusedJars = new HashMap<>();
+
+    /**
+     * Whether a classpath entry may be needed by the closure. Jars under the driver cache directory are kept only
+     * for closure artifacts, an artifact without a version keeps all of its downloaded versions.
+     * Jars in a maven repository layout are dropped when their coordinates are used only by artifacts outside the closure.
+     * Everything else is kept.
+     */
+    boolean isNeeded(@NotNull Path entry, @NotNull Path driversDir) {
+      if (entry.startsWith(driversDir) && entry.getNameCount() >= driversDir.getNameCount() + 2) {
+        Path relative = driversDir.relativize(entry);
+        SortedSet<String> versions = artifacts.get(relative.getName(0).toString());
+        if (versions == null) return false;
+        return versions.isEmpty() || versions.contains(relative.getName(1).toString());
+      }
+      int n = entry.getNameCount();
+      if (n < 4) return true;
+      List<String> groups = unusedJars.get(entry.getName(n - 3) + "/" + entry.getName(n - 2));
+      if (groups == null) return true;
+      for (String group : groups) {
+        List<String> groupPath = StringUtil.split(group, ".");
+        int start = n - 3 - groupPath.size();
+        if (start >= 0 && entry.subpath(start, n - 3).equals(Path.of(String.join("/", groupPath)))) return false;
+      }
+      return true;
+    }
+  }
+
+  private static final class JarCheck {
+    final long size;
+    final long mtime;
+    String problem;
+
+    JarCheck(long size, long mtime) {
+      this.size = size;
+      this.mtime = mtime;
+    }
+  }
+}
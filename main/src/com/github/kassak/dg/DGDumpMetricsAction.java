@@ -0,0 +1,35 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class DGDumpMetricsAction extends DumbAwareAction {
+  @Override
+  public @NotNull ActionUpdateThread getActionUpdateThread() {
+    return ActionUpdateThread.BGT;
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    String json = DGMetrics.toJson();
+    FileSaverDescriptor descriptor = new FileSaverDescriptor("Dump DG Metrics", "Save plugin timings and counters as JSON", "json");
+    VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, e.getProject()).save("dg-metrics.json");
+    if (target == null) return;
+    try {
+      Files.writeString(target.getFile().toPath(), json, StandardCharsets.UTF_8);
+    }
+    catch (IOException ex) {
+      Messages.showErrorDialog(e.getProject(), ex.getMessage(), "Dump DG Metrics");
+    }
+  }
+}
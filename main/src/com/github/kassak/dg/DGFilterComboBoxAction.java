@@ -1,18 +1,22 @@
 package com.github.kassak.dg;
 
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
 import com.intellij.execution.runners.ExecutionUtil;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.util.PsiNavigationSupport;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.actionSystem.ex.ComboBoxAction;
-import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComponentWithBrowseButton;
 import com.intellij.openapi.ui.popup.*;
 import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
-import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.IdeFocusManager;
@@ -20,13 +24,20 @@ import com.intellij.openapi.wm.IdeFrame;
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.pom.Navigatable;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.ui.CollectionListModel;
 import com.intellij.ui.EditorTextField;
+import com.intellij.ui.ScrollPaneFactory;
 import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
 import com.intellij.ui.popup.PopupFactoryImpl;
 import com.intellij.ui.popup.list.ListPopupImpl;
+import com.intellij.util.Alarm;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Consumer;
 import com.intellij.util.ObjectUtils;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
@@ -39,11 +50,12 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware {
 
@@ -76,6 +88,13 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
     actions.add(new MyOverwriteAction());
     actions.add(new MyInProcessRmiAction());
     actions.add(new MyAttachRemoteAction());
+    actions.add(new MyResolveUuidsAction());
+    actions.add(new MyVerifyDriversAction());
+    actions.add(new MyMinimalClasspathAction());
+    actions.add(new Separator());
+    actions.add(new MyRunShardedAction());
+    actions.add(createShardsGroup("Parallel Shards", new int[]{1, 2, 4, 8, 16}, DGTestSettings::getParallelShards, DGTestSettings::setParallelShards));
+    actions.add(createShardsGroup("Shards per DBMS", new int[]{1, 2, 4, 8}, DGTestSettings::getShardsPerDbms, DGTestSettings::setShardsPerDbms));
     actions.add(new Separator());
     for (String filter : settings.getFilters()) {
       actions.add(new MyFilterAction(filter));
@@ -162,17 +181,7 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
       public void actionPerformed(ActionEvent e) {
         MyFilterAction filter = getSelectedFilter(popup);
         if (filter == null) return;
-        Pattern p;
-        try {
-          p = Pattern.compile(filter.myFilter);
-        }
-        catch (PatternSyntaxException pse) {
-          return;
-        }
-        List<DGTestDataSources.DGTestDataSource> targets = DGTestDataSources.list(popup.getProject())
-          .flatten(dss -> dss.dataSources)
-          .filter(ds -> p.matcher(ds.uuid).matches())
-          .toList();
+        List<DGTestDataSources.DGTestDataSource> targets = DGFilterEngine.getInstance(popup.getProject()).getTargets(filter.myFilter);
         if (targets.isEmpty()) return;
         if (targets.size() == 1) {
           navigate(targets.get(0));
@@ -191,7 +200,7 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
       }
 
       private void navigate(DGTestDataSources.DGTestDataSource ds) {
-        XmlTag element = ds.source.getElement();
+        XmlTag element = ds.getSource();
         DGFilterComboBoxAction.navigate(element, true);
       }
     });
@@ -237,6 +246,15 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
       return ActionUpdateThread.BGT;
     }
 
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+      super.update(e);
+      Project project = e.getProject();
+      if (project == null || !DGConfigModel.getInstance(project).isWarm()) return;
+      int count = DGFilterEngine.getInstance(project).count(myFilter);
+      e.getPresentation().setDescription(StringUtil.pluralize(count + " data source", count));
+    }
+
     @Override
     public boolean isSelected(@NotNull AnActionEvent e) {
       Project project = e.getProject();
@@ -290,6 +308,19 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
         IdeFocusManager.getInstance(project).requestFocus(editor, true);
       }));
     builder.addLabeledComponent("Filter:", comp);
+    JBLabel matchCount = new JBLabel();
+    matchCount.setForeground(UIUtil.getContextHelpForeground());
+    CollectionListModel<DGTestDataSources.DGTestDataSource> matchModel = new CollectionListModel<>();
+    JBList<DGTestDataSources.DGTestDataSource> matchList = new JBList<>(matchModel);
+    matchList.setFocusable(false);
+    matchList.setVisibleRowCount(PREVIEW_SIZE);
+    matchList.getEmptyText().setText("No matching data sources");
+    matchList.setCellRenderer(SimpleListCellRenderer.create((lbl, o, i) -> {
+      lbl.setIcon(o.getIcon());
+      lbl.setText(o.uuid);
+    }));
+    builder.addComponent(matchCount);
+    builder.addComponent(ScrollPaneFactory.createScrollPane(matchList));
     JBPopup popup = JBPopupFactory.getInstance().createComponentPopupBuilder(builder.getPanel(), editor)
       .setTitle("Edit Filter")
       .setResizable(true)
@@ -305,6 +336,29 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
       .createPopup();
     closeOk.set(popup::closeOk);
 
+    Alarm previewAlarm = new Alarm(popup);
+    Runnable preview = () -> ReadAction.nonBlocking(() -> FilterPreview.compute(project, editor.getText()))
+      .expireWith(popup)
+      .coalesceBy(matchModel)
+      .finishOnUiThread(ModalityState.any(), p -> {
+        matchCount.setText(p.describe());
+        matchModel.replaceAll(p.first);
+      })
+      .submit(AppExecutorUtil.getAppExecutorService());
+    editor.addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(@NotNull DocumentEvent event) {
+        previewAlarm.cancelAllRequests();
+        previewAlarm.addRequest(preview, PREVIEW_DELAY);
+      }
+    });
+    preview.run();
+    project.getMessageBus().connect(popup).subscribe(DGConfigModel.TOPIC, (file, added, removed, changed) -> {
+      if (!(file instanceof DGTestDataSources)) return;
+      previewAlarm.cancelAllRequests();
+      previewAlarm.addRequest(preview, PREVIEW_DELAY);
+    });
+
     CompletableFuture<String> res = new CompletableFuture<>();
     popup.addListener(new JBPopupListener() {
       @Override
@@ -322,8 +376,27 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
     return res;
   }
 
+  private static final int PREVIEW_SIZE = 10;
+  private static final int PREVIEW_DELAY = 300;
+
+  private record FilterPreview(boolean valid, int count, @NotNull List<DGTestDataSources.DGTestDataSource> first) {
+    @NotNull
+    static FilterPreview compute(@NotNull Project project, @NotNull String filter) {
+      DGFilterEngine.Preview preview = DGFilterEngine.getInstance(project).preview(filter, PREVIEW_SIZE);
+      if (preview == null) return new FilterPreview(false, 0, Collections.emptyList());
+      return new FilterPreview(true, preview.count(), preview.first());
+    }
+
+    @NotNull
+    String describe() {
+      if (!valid) return "Invalid regular expression";
+      String res = StringUtil.pluralize(count + " matching data source", count);
+      return count > first.size() ? res + ", showing first " + first.size() : res;
+    }
+  }
+
   private static void choosePredefined(@NotNull Project project, @NotNull JComponent e, @NotNull Consumer<String> s) {
-    List<DGTestDataSources.DGTestDataSource> dss = DGTestDataSources.list(project).flatten(td -> td.dataSources).sort((ds1, ds2) -> StringUtil.naturalCompare(ds1.uuid, ds2.uuid)).toList();
+    List<DGTestDataSources.DGTestDataSource> dss = ContainerUtil.sorted(DGConfigModel.getInstance(project).getSnapshot().getDataSources(), (ds1, ds2) -> StringUtil.naturalCompare(ds1.uuid, ds2.uuid));
     JBPopupFactory.getInstance().createListPopup(new BaseListPopupStep<>("Test Data Sources", dss) {
       @Override
       public Icon getIconFor(DGTestDataSources.DGTestDataSource value) {
@@ -350,15 +423,8 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
     }).showUnderneathOf(e);
   }
 
-  private static final Key<Boolean> IS_DG_PROJECT = Key.create("IS_DG_PROJECT");
-
   public static boolean isDGProject(@NotNull Project project) {
-    Boolean isDG = IS_DG_PROJECT.get(project);
-    if (isDG == null) {
-      isDG = ModuleManager.getInstance(project).findModuleByName("intellij.database") != null;
-      IS_DG_PROJECT.set(project, isDG);
-    }
-    return isDG;
+    return DGModules.getInstance(project).isDGProject();
   }
 
   private static class MyAskAction extends ToggleAction implements DumbAware/*KeepingPopupOpenAction*/ {
@@ -460,4 +526,139 @@ public class DGFilterComboBoxAction extends ComboBoxAction implements DumbAware
       }
     }
   }
+
+  private static class MyResolveUuidsAction extends ToggleAction implements DumbAware /*KeepingPopupOpenAction*/ {
+    public MyResolveUuidsAction() {
+      super("Pass Resolved UUIDs");
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+      return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+      Project project = e.getProject();
+      return project != null && DGTestSettings.getInstance(project).isResolveUuids();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean selected) {
+      Project project = e.getProject();
+      if (project != null) {
+        DGTestSettings.getInstance(project).setResolveUuids(selected);
+      }
+    }
+  }
+
+  private static class MyVerifyDriversAction extends ToggleAction implements DumbAware /*KeepingPopupOpenAction*/ {
+    public MyVerifyDriversAction() {
+      super("Verify Driver Jars");
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+      return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+      Project project = e.getProject();
+      return project != null && DGTestSettings.getInstance(project).isVerifyDrivers();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean selected) {
+      Project project = e.getProject();
+      if (project != null) {
+        DGTestSettings.getInstance(project).setVerifyDrivers(selected);
+      }
+    }
+  }
+
+  private static class MyMinimalClasspathAction extends ToggleAction implements DumbAware /*KeepingPopupOpenAction*/ {
+    public MyMinimalClasspathAction() {
+      super("Minimal Driver Classpath");
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+      return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+      Project project = e.getProject();
+      return project != null && DGTestSettings.getInstance(project).isMinimalClasspath();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean selected) {
+      Project project = e.getProject();
+      if (project != null) {
+        DGTestSettings.getInstance(project).setMinimalClasspath(selected);
+      }
+    }
+  }
+
+  @NotNull
+  private static ActionGroup createShardsGroup(@NotNull String name, int @NotNull [] values,
+                                               @NotNull ToIntFunction<DGTestSettings> getter,
+                                               @NotNull ObjIntConsumer<DGTestSettings> setter) {
+    DefaultActionGroup group = new DefaultActionGroup(name, true);
+    for (int value : values) {
+      group.add(new ToggleAction(String.valueOf(value)) {
+        @Override
+        public @NotNull ActionUpdateThread getActionUpdateThread() {
+          return ActionUpdateThread.BGT;
+        }
+
+        @Override
+        public boolean isSelected(@NotNull AnActionEvent e) {
+          Project project = e.getProject();
+          return project != null && getter.applyAsInt(DGTestSettings.getInstance(project)) == value;
+        }
+
+        @Override
+        public void setSelected(@NotNull AnActionEvent e, boolean selected) {
+          Project project = e.getProject();
+          if (project != null && selected) setter.accept(DGTestSettings.getInstance(project), value);
+        }
+      });
+    }
+    return group;
+  }
+
+  private static class MyRunShardedAction extends AnAction implements DumbAware {
+    public MyRunShardedAction() {
+      super("Run Sharded", "Run the selected test configuration once per shard of data sources matched by the current filter", AllIcons.Actions.Execute);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+      return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+      Project project = e.getProject();
+      RunnerAndConfigurationSettings selected = project == null ? null : RunManager.getInstance(project).getSelectedConfiguration();
+      e.getPresentation().setEnabled(selected != null && DGTestSettings.getInstance(project).getCurrent() != null &&
+                                     DGConfigurationExtension.isDGTestConfiguration(selected.getConfiguration()));
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+      Project project = e.getProject();
+      if (project == null) return;
+      DGTestSettings settings = DGTestSettings.getInstance(project);
+      RunnerAndConfigurationSettings selected = RunManager.getInstance(project).getSelectedConfiguration();
+      String filter = settings.getCurrent();
+      if (selected == null || filter == null) return;
+      List<DGShardPlanner.Shard> shards = DGShardedRun.plan(project, selected, DGFilterEngine.getInstance(project).getTargets(filter), settings.getShardsPerDbms());
+      if (shards.isEmpty()) return;
+      DGShardedRun.start(project, selected, shards, settings.getParallelShards());
+    }
+  }
 }
@@ -0,0 +1,130 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.containers.JBIterable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Matches data source filters against uuids.
+ * Every uuid gets a stable index, each filter is compiled once and keeps a bitset of matching indices,
+ * so after a model change only new uuids are run through the patterns.
+ * Indices change when the index is compacted, so they never leave the lock: every call matches and maps back to uuids at once.
+ */
+public class DGFilterEngine {
+  private final Project myProject;
+  private final DGFilterIndex myIndex = new DGFilterIndex(ProgressManager::checkCanceled);
+  private DGConfigModel.Snapshot mySnapshot;
+
+  @NotNull
+  public static DGFilterEngine getInstance(@NotNull Project project) {
+    return project.getService(DGFilterEngine.class);
+  }
+
+  public DGFilterEngine(@NotNull Project project) {
+    myProject = project;
+  }
+
+  public int count(@NotNull String filter) {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    synchronized (this) {
+      sync(snapshot);
+      return myIndex.matches(filter).cardinality();
+    }
+  }
+
+  /**
+   * Uuids matching the filter, null if it is not a valid regex.
+   */
+  @Nullable
+  public List<String> getUuids(@NotNull String filter) {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    synchronized (this) {
+      sync(snapshot);
+      if (myIndex.compile(filter) == null) return null;
+      return myIndex.getUuids(myIndex.matches(filter), Integer.MAX_VALUE);
+    }
+  }
+
+  @NotNull
+  public List<DGTestDataSource> getTargets(@NotNull String filter) {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    synchronized (this) {
+      sync(snapshot);
+      return getDataSources(myIndex.matches(filter), Integer.MAX_VALUE);
+    }
+  }
+
+  /**
+   * Matches of a filter being edited, null if it is not a valid regex.
+   * Unlike {@link #getTargets} the filter is not cached, so previews do not evict saved filters.
+   */
+  @Nullable
+  public Preview preview(@NotNull String filter, int limit) {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    synchronized (this) {
+      sync(snapshot);
+      BitSet matches = myIndex.matchOnce(filter);
+      return matches == null ? null : new Preview(matches.cardinality(), getDataSources(matches, limit));
+    }
+  }
+
+  /**
+   * Matches the filters against the current model, so they are cached for later calls.
+   */
+  public void warmUp(@NotNull Collection<String> filters) {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    synchronized (this) {
+      sync(snapshot);
+      for (String filter : filters) {
+        myIndex.matches(filter);
+      }
+    }
+  }
+
+  /**
+   * Indices only mean something under the lock, so they are turned into data sources of the snapshot the index is at.
+   */
+  @NotNull
+  private List<DGTestDataSource> getDataSources(@NotNull BitSet matches, int limit) {
+    List<DGTestDataSource> res = new ArrayList<>();
+    for (String uuid : myIndex.getUuids(matches, limit)) {
+      res.addAll(mySnapshot.getDataSources(uuid));
+    }
+    return res;
+  }
+
+  /**
+   * Taken outside of the lock, a cold or stale model may take a while and must not block other callers.
+   * Data sources are flattened here as well, so only the index update runs under the lock.
+   */
+  @NotNull
+  private DGConfigModel.Snapshot getSnapshot() {
+    DGConfigModel.Snapshot snapshot = DGConfigModel.getInstance(myProject).getSnapshot();
+    snapshot.getDataSources();
+    return snapshot;
+  }
+
+  /**
+   * Moves the index to {@code snapshot} unless it is already there or further, callers may come with snapshots out of order.
+   */
+  private void sync(@NotNull DGConfigModel.Snapshot snapshot) {
+    if (mySnapshot != null && snapshot.stamp <= mySnapshot.stamp) return;
+    mySnapshot = snapshot;
+    myIndex.update(JBIterable.from(snapshot.getDataSources()).map(ds -> ds.uuid));
+  }
+
+  /**
+   * @param count matching data sources
+   * @param first some of them, in index order
+   */
+  public record Preview(int count, @NotNull List<DGTestDataSource> first) {
+  }
+}
@@ -0,0 +1,167 @@
+package com.github.kassak.dg;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Uuid ordering and per-filter match bitsets behind {@link DGFilterEngine}. Not thread-safe.
+ */
+final class DGFilterIndex {
+  private static final int MAX_CACHED_FILTERS = 64;
+
+  private final Runnable myCheckCanceled;
+  private final Map<String, Integer> myIndices = new HashMap<>();
+  private final List<String> myUuids = new ArrayList<>();
+  private final BitSet myLive = new BitSet();
+  private final Map<String, CompiledFilter> myFilters = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CompiledFilter> eldest) {
+      return size() > MAX_CACHED_FILTERS;
+    }
+  };
+
+  DGFilterIndex(@NotNull Runnable checkCanceled) {
+    myCheckCanceled = checkCanceled;
+  }
+
+  /**
+   * Makes {@code uuids} the live set. New uuids get the next free index and are matched against every cached filter,
+   * removed ones are cleared from all bitsets. A uuid coming back keeps its old index but was cleared on removal,
+   * so it is matched again as well.
+   */
+  void update(@NotNull Iterable<String> uuids) {
+    BitSet live = new BitSet();
+    for (String uuid : uuids) {
+      Integer idx = myIndices.get(uuid);
+      if (idx == null) {
+        idx = myUuids.size();
+        myIndices.put(uuid, idx);
+        myUuids.add(uuid);
+        matchCached(idx, uuid);
+      }
+      else if (!myLive.get(idx)) {
+        matchCached(idx, uuid);
+      }
+      live.set(idx);
+    }
+    BitSet dead = (BitSet)myLive.clone();
+    dead.andNot(live);
+    myLive.clear();
+    myLive.or(live);
+    for (CompiledFilter filter : myFilters.values()) {
+      filter.matches.andNot(dead);
+    }
+    if (myUuids.size() > 2 * Math.max(16, myLive.cardinality())) compact();
+  }
+
+  @Nullable
+  Pattern compile(@NotNull String filter) {
+    return getFilter(filter).pattern;
+  }
+
+  /**
+   * Live bitset of the filter, callers must not modify it.
+   */
+  @NotNull
+  BitSet matches(@NotNull String filter) {
+    return getFilter(filter).matches;
+  }
+
+  /**
+   * Matches of a filter which is not kept in the cache unless it is there already, null if it is not a valid regex.
+   * Callers must not modify the result.
+   */
+  @Nullable
+  BitSet matchOnce(@NotNull String filter) {
+    CompiledFilter compiled = myFilters.get(filter);
+    if (compiled == null) {
+      compiled = new CompiledFilter(filter);
+      if (compiled.pattern == null) return null;
+      matchLive(compiled);
+    }
+    return compiled.pattern == null ? null : compiled.matches;
+  }
+
+  @NotNull
+  BitSet live() {
+    return myLive;
+  }
+
+  @NotNull
+  List<String> getUuids(@NotNull BitSet matches, int limit) {
+    List<String> res = new ArrayList<>(Math.min(limit, matches.cardinality()));
+    for (int i = matches.nextSetBit(0); i >= 0 && res.size() < limit; i = matches.nextSetBit(i + 1)) {
+      if (i < myUuids.size()) res.add(myUuids.get(i));
+    }
+    return res;
+  }
+
+  @NotNull
+  private CompiledFilter getFilter(@NotNull String filter) {
+    CompiledFilter compiled = myFilters.get(filter);
+    if (compiled == null) {
+      compiled = new CompiledFilter(filter);
+      matchLive(compiled);
+      myFilters.put(filter, compiled);
+    }
+    return compiled;
+  }
+
+  private void matchCached(int idx, @NotNull String uuid) {
+    for (CompiledFilter filter : myFilters.values()) {
+      filter.match(idx, uuid);
+    }
+  }
+
+  private void matchLive(@NotNull CompiledFilter compiled) {
+    for (int i = myLive.nextSetBit(0); i >= 0; i = myLive.nextSetBit(i + 1)) {
+      myCheckCanceled.run();
+      compiled.match(i, myUuids.get(i));
+    }
+  }
+
+  /**
+   * Drops indices of removed uuids once they outnumber live ones.
+   */
+  private void compact() {
+    List<String> live = getUuids(myLive, Integer.MAX_VALUE);
+    myIndices.clear();
+    myUuids.clear();
+    myLive.clear();
+    for (String uuid : live) {
+      myIndices.put(uuid, myUuids.size());
+      myUuids.add(uuid);
+    }
+    myLive.set(0, myUuids.size());
+    for (CompiledFilter filter : myFilters.values()) {
+      filter.matches.clear();
+      for (int i = 0; i < myUuids.size(); i++) {
+        filter.match(i, myUuids.get(i));
+      }
+    }
+  }
+
+  private static final class CompiledFilter {
+    final Pattern pattern;
+    final BitSet matches = new BitSet();
+
+    CompiledFilter(@NotNull String filter) {
+      Pattern p;
+      try {
+        p = Pattern.compile(filter);
+      }
+      catch (PatternSyntaxException e) {
+        p = null;
+      }
+      pattern = p;
+    }
+
+    void match(int idx, @NotNull String uuid) {
+      if (pattern != null && pattern.matcher(uuid).matches()) matches.set(idx);
+    }
+  }
+}
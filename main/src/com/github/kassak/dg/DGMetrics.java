@@ -0,0 +1,153 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters for the plugin hot paths, shown in the metrics tool window and dumped as JSON.
+ * Recording is a few atomic adds, so it stays on unconditionally.
+ */
+public final class DGMetrics {
+  public static final String PARSE_FILE = "parse.file";
+  public static final String LOAD_INDEX = "model.load.index";
+  public static final String LOAD_FILES = "model.load.files";
+  public static final String SNAPSHOT_HIT = "model.snapshot.hit";
+  public static final String SNAPSHOT_MISS = "model.snapshot.miss";
+  public static final String RESOLVE = "resolve";
+  public static final String COMPLETION = "completion";
+  public static final String SUBSTITUTOR = "substitutor.getLanguage";
+  public static final String FOLDER_HIT = "substitutor.folder.hit";
+  public static final String FOLDER_MISS = "substitutor.folder.miss";
+  public static final String RUN_PARAMETERS = "run.updateJavaParameters";
+  public static final String RUN_TO_START = "run.toProcessStart";
+  public static final String VERIFY_DRIVERS = "run.verifyDrivers";
+  public static final String JAR_HIT = "run.verifyDrivers.jar.hit";
+  public static final String JAR_MISS = "run.verifyDrivers.jar.miss";
+  public static final String TRIMMED_CLASSPATH = "run.classpath.trimmed";
+
+  private static final ConcurrentMap<String, Histogram> ourTimers = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, LongAdder> ourCounters = new ConcurrentHashMap<>();
+  private static volatile long ourSince = System.nanoTime();
+
+  private DGMetrics() {
+  }
+
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  public static void record(@NotNull String timer, long startNanos) {
+    ourTimers.computeIfAbsent(timer, k -> new Histogram()).add(System.nanoTime() - startNanos);
+  }
+
+  public static void count(@NotNull String counter) {
+    ourCounters.computeIfAbsent(counter, k -> new LongAdder()).increment();
+  }
+
+  public static void reset() {
+    ourTimers.clear();
+    ourCounters.clear();
+    ourSince = System.nanoTime();
+  }
+
+  @NotNull
+  public static String render() {
+    StringBuilder sb = new StringBuilder();
+    double seconds = getSeconds();
+    sb.append(String.format("Collected for %.1fs%n%n", seconds));
+    new TreeMap<>(ourCounters).forEach((name, value) ->
+      sb.append(String.format("%-32s %10d  %8.2f/s%n", name, value.sum(), value.sum() / seconds)));
+    new TreeMap<>(ourTimers).forEach((name, h) -> {
+      long count = h.count.sum();
+      sb.append(String.format("%n%-32s n=%d  mean=%s  max=%s  %.2f/s%n", name, count,
+        formatNanos(count == 0 ? 0 : h.total.sum() / count), formatNanos(h.max.get()), count / seconds));
+      long top = 1;
+      for (int i = 0; i < Histogram.BUCKETS; i++) top = Math.max(top, h.buckets.get(i));
+      for (int i = 0; i < Histogram.BUCKETS; i++) {
+        long n = h.buckets.get(i);
+        if (n == 0) continue;
+        sb.append(String.format("  <%8s %s %d%n", formatNanos(Histogram.upperBound(i)), StringUtil.repeat("#", (int)Math.max(1, 40 * n / top)), n));
+      }
+    });
+    return sb.toString();
+  }
+
+  @NotNull
+  public static String toJson() {
+    StringBuilder sb = new StringBuilder("{\n");
+    sb.append("  \"seconds\": ").append(String.format("%.3f", getSeconds())).append(",\n");
+    sb.append("  \"counters\": {");
+    String sep = "\n";
+    for (Map.Entry<String, LongAdder> e : new TreeMap<>(ourCounters).entrySet()) {
+      sb.append(sep).append("    \"").append(e.getKey()).append("\": ").append(e.getValue().sum());
+      sep = ",\n";
+    }
+    sb.append("\n  },\n  \"timers\": {");
+    sep = "\n";
+    for (Map.Entry<String, Histogram> e : new TreeMap<>(ourTimers).entrySet()) {
+      Histogram h = e.getValue();
+      sb.append(sep).append("    \"").append(e.getKey()).append("\": {")
+        .append("\"count\": ").append(h.count.sum())
+        .append(", \"totalNanos\": ").append(h.total.sum())
+        .append(", \"maxNanos\": ").append(h.max.get())
+        .append(", \"buckets\": {");
+      String bucketSep = "";
+      for (int i = 0; i < Histogram.BUCKETS; i++) {
+        long n = h.buckets.get(i);
+        if (n == 0) continue;
+        sb.append(bucketSep).append('"').append(Histogram.upperBound(i)).append("\": ").append(n);
+        bucketSep = ", ";
+      }
+      sb.append("}}");
+      sep = ",\n";
+    }
+    sb.append("\n  }\n}\n");
+    return sb.toString();
+  }
+
+  private static double getSeconds() {
+    return Math.max(1e-3, (System.nanoTime() - ourSince) / 1e9);
+  }
+
+  @NotNull
+  private static String formatNanos(long nanos) {
+    if (nanos == Long.MAX_VALUE) return "inf";
+    if (nanos < 1_000) return nanos + "ns";
+    if (nanos < 1_000_000) return nanos / 1_000 + "us";
+    if (nanos < 1_000_000_000) return nanos / 1_000_000 + "ms";
+    return String.format("%.1fs", nanos / 1e9);
+  }
+
+  /**
+   * Power-of-two buckets from 1us, the last one is open-ended.
+   */
+  private static final class Histogram {
+    static final int BUCKETS = 26;
+
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    final LongAdder count = new LongAdder();
+    final LongAdder total = new LongAdder();
+    final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void add(long nanos) {
+      long micros = Math.max(0, nanos / 1_000);
+      int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+      buckets.incrementAndGet(bucket);
+      count.increment();
+      total.add(nanos);
+      max.accumulate(nanos);
+    }
+
+    static long upperBound(int bucket) {
+      return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) * 1_000;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.github.kassak.dg;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.*;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+
+/**
+ * Shows {@link DGMetrics} as text histograms, refreshed every second while the tool window is showing.
+ */
+public class DGMetricsToolWindowFactory implements ToolWindowFactory, DumbAware {
+  private static final int REFRESH_MS = 1000;
+
+  @Override
+  public boolean shouldBeAvailable(@NotNull Project project) {
+    return DGFilterComboBoxAction.isDGProject(project);
+  }
+
+  @Override
+  public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+    JTextArea text = new JTextArea();
+    text.setEditable(false);
+    text.setFont(JBUI.Fonts.create("Monospaced", JBUI.Fonts.label().getSize()));
+    Runnable refresh = () -> {
+      if (text.isShowing()) text.setText(DGMetrics.render());
+    };
+
+    DefaultActionGroup group = new DefaultActionGroup();
+    group.add(new DumbAwareAction("Refresh", null, AllIcons.Actions.Refresh) {
+      @Override
+      public void actionPerformed(@NotNull AnActionEvent e) {
+        text.setText(DGMetrics.render());
+      }
+    });
+    group.add(new DumbAwareAction("Reset", null, AllIcons.Actions.GC) {
+      @Override
+      public void actionPerformed(@NotNull AnActionEvent e) {
+        DGMetrics.reset();
+        text.setText(DGMetrics.render());
+      }
+    });
+    group.add(ActionManager.getInstance().getAction("DGDumpMetrics"));
+    ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("DGMetrics", group, false);
+
+    SimpleToolWindowPanel panel = new SimpleToolWindowPanel(false, true);
+    toolbar.setTargetComponent(panel);
+    panel.setToolbar(toolbar.getComponent());
+    panel.setContent(ScrollPaneFactory.createScrollPane(text));
+
+    Content content = ContentFactory.getInstance().createContent(panel, null, false);
+    Timer timer = new Timer(REFRESH_MS, e -> refresh.run());
+    timer.start();
+    Disposer.register(content, timer::stop);
+    toolWindow.getContentManager().addContent(content);
+  }
+}
@@ -0,0 +1,173 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGConfigIndex.Kind;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.ModuleListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Function;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.model.java.JavaResourceRootType;
+
+import java.util.*;
+
+/**
+ * Classifies project modules once per module structure change: whether this is the DG project,
+ * which DG modules hold tests and where config files are read from.
+ */
+public class DGModules implements Disposable {
+  public static final String DG_MODULE_PREFIX = "intellij.database";
+  private static final String CONNECTIVITY_MODULE = DG_MODULE_PREFIX + ".connectivity";
+  private static final Set<String> TEST_CONFIG_MODULES = Set.of(DG_MODULE_PREFIX + ".tests", CONNECTIVITY_MODULE + ".tests");
+  private static final String DRIVERS_DIR = "databaseDrivers";
+  private static final String ARTIFACTS_DIR = "resources";
+  private static final String ARTIFACTS_FILE = "database-artifacts.xml";
+
+  private final Project myProject;
+  private final SimpleModificationTracker myTracker = new SimpleModificationTracker();
+  private volatile Classification myClassification;
+
+  @NotNull
+  public static DGModules getInstance(@NotNull Project project) {
+    return project.getService(DGModules.class);
+  }
+
+  public DGModules(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        myTracker.incModificationCount();
+      }
+    });
+    connection.subscribe(ModuleListener.TOPIC, new ModuleListener() {
+      @Override
+      public void modulesAdded(@NotNull Project project, @NotNull List<? extends Module> modules) {
+        myTracker.incModificationCount();
+      }
+
+      @Override
+      public void moduleRemoved(@NotNull Project project, @NotNull Module module) {
+        myTracker.incModificationCount();
+      }
+
+      @Override
+      public void modulesRenamed(@NotNull Project project, @NotNull List<? extends Module> modules,
+                                 @NotNull Function<? super Module, String> oldNameProvider) {
+        myTracker.incModificationCount();
+      }
+    });
+  }
+
+  public boolean isDGProject() {
+    return get().dgProject;
+  }
+
+  public boolean isTestModule(@Nullable Module module) {
+    return module != null && get().tests.contains(module);
+  }
+
+  /**
+   * Kind of a config file at one of the places DG reads them from, null for any other file:
+   * test configs right in test resource roots of the test modules, bundled drivers in {@code databaseDrivers}
+   * of DG resource roots and bundled artifacts in {@code resources} of connectivity resource roots.
+   */
+  @Nullable
+  public Kind getConfigKind(@NotNull VirtualFile file) {
+    Kind kind = DGConfigIndex.getKind(file.getName());
+    VirtualFile dir = file.getParent();
+    if (kind == null || dir == null) return null;
+    Classification c = get();
+    if (!c.dgProject) return null;
+    if (c.testResourceRoots.contains(dir)) return isTestConfig(kind, file.getName()) ? kind : null;
+    VirtualFile root = dir.getParent();
+    if (root == null) return null;
+    return switch (kind) {
+      case DRIVER -> DRIVERS_DIR.equals(dir.getName()) && c.resourceRoots.contains(root) ? kind : null;
+      case ARTIFACT -> ARTIFACTS_DIR.equals(dir.getName()) && ARTIFACTS_FILE.equals(file.getName()) &&
+                       c.connectivityResourceRoots.contains(root) ? kind : null;
+      case DATA_SOURCE -> null;
+    };
+  }
+
+  private static boolean isTestConfig(@NotNull Kind kind, @NotNull String name) {
+    return switch (kind) {
+      case DATA_SOURCE -> true;
+      case DRIVER -> name.endsWith("test-database-drivers.xml");
+      case ARTIFACT -> name.endsWith("test-" + ARTIFACTS_FILE);
+    };
+  }
+
+  /**
+   * All config files {@link #getConfigKind} accepts.
+   */
+  @NotNull
+  public List<VirtualFile> getConfigFiles() {
+    Classification c = get();
+    if (!c.dgProject) return Collections.emptyList();
+    List<VirtualFile> candidates = new ArrayList<>();
+    for (VirtualFile root : c.testResourceRoots) {
+      ContainerUtil.addAll(candidates, root.getChildren());
+    }
+    for (VirtualFile root : c.resourceRoots) {
+      VirtualFile dir = root.findChild(DRIVERS_DIR);
+      if (dir != null) ContainerUtil.addAll(candidates, dir.getChildren());
+    }
+    for (VirtualFile root : c.connectivityResourceRoots) {
+      ContainerUtil.addIfNotNull(candidates, root.findFileByRelativePath(ARTIFACTS_DIR + "/" + ARTIFACTS_FILE));
+    }
+    return ContainerUtil.filter(candidates, file -> file.isValid() && !file.isDirectory() && getConfigKind(file) != null);
+  }
+
+  @NotNull
+  private Classification get() {
+    Classification c = myClassification;
+    long stamp = myTracker.getModificationCount();
+    if (c == null || c.stamp != stamp) {
+      c = new Classification(stamp, ModuleManager.getInstance(myProject).getModules());
+      myClassification = c;
+    }
+    return c;
+  }
+
+  @Override
+  public void dispose() {
+    myClassification = null;
+  }
+
+  private static final class Classification {
+    final long stamp;
+    final boolean dgProject;
+    final Set<Module> tests = new HashSet<>();
+    final Set<VirtualFile> testResourceRoots = new HashSet<>();
+    final Set<VirtualFile> resourceRoots = new HashSet<>();
+    final Set<VirtualFile> connectivityResourceRoots = new HashSet<>();
+
+    Classification(long stamp, Module @NotNull [] modules) {
+      this.stamp = stamp;
+      boolean dg = false;
+      for (Module module : modules) {
+        String name = module.getName();
+        if (!name.startsWith(DG_MODULE_PREFIX)) continue;
+        dg |= name.equals(DG_MODULE_PREFIX);
+        if (name.contains("test")) tests.add(module);
+        ModuleRootManager roots = ModuleRootManager.getInstance(module);
+        List<VirtualFile> resourceRoots = roots.getSourceRoots(JavaResourceRootType.RESOURCE);
+        this.resourceRoots.addAll(resourceRoots);
+        if (name.equals(CONNECTIVITY_MODULE)) connectivityResourceRoots.addAll(resourceRoots);
+        if (TEST_CONFIG_MODULES.contains(name)) testResourceRoots.addAll(roots.getSourceRoots(JavaResourceRootType.TEST_RESOURCE));
+      }
+      dgProject = dg;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.github.kassak.dg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds markers in streamed process output in a single pass over each chunk and reports the rest of the marker line.
+ * Matching state survives chunk boundaries, so markers split between chunks or printed mid-line are found too.
+ * Only the payload of a matched marker is buffered, capped at {@link #MAX_PAYLOAD} chars.
+ */
+public final class DGOutputScanner {
+  public static final int MAX_PAYLOAD = 1024;
+  private static final int ALPHABET = 128;
+
+  private final Marker[] myMarkers;
+  private final int[][] myDelta;
+  private final int[] myOutput;
+  private final Listener myListener;
+
+  private int myState;
+  private Marker myCapturing;
+  private final StringBuilder myPayload = new StringBuilder();
+
+  public DGOutputScanner(@NotNull Listener listener, Marker @NotNull ... markers) {
+    myListener = listener;
+    myMarkers = markers;
+    List<int[]> go = new ArrayList<>();
+    List<Integer> output = new ArrayList<>();
+    go.add(newRow());
+    output.add(-1);
+    for (int m = 0; m < markers.length; m++) {
+      int state = 0;
+      for (char c : markers[m].text.toCharArray()) {
+        if (c >= ALPHABET) throw new IllegalArgumentException("Non-ASCII marker: " + markers[m].text);
+        if (go.get(state)[c] < 0) {
+          go.get(state)[c] = go.size();
+          go.add(newRow());
+          output.add(-1);
+        }
+        state = go.get(state)[c];
+      }
+      output.set(state, m);
+    }
+    myDelta = go.toArray(new int[0][]);
+    myOutput = new int[myDelta.length];
+    for (int i = 0; i < myOutput.length; i++) myOutput[i] = output.get(i);
+    buildAutomaton();
+  }
+
+  private static int @NotNull [] newRow() {
+    int[] row = new int[ALPHABET];
+    Arrays.fill(row, -1);
+    return row;
+  }
+
+  /**
+   * Turns the trie into a full transition table over ASCII using failure links, breadth first.
+   * A state inherits the output of its failure state when it has none of its own.
+   */
+  private void buildAutomaton() {
+    int[] fail = new int[myDelta.length];
+    int[] queue = new int[myDelta.length];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < ALPHABET; c++) {
+      int next = myDelta[0][c];
+      if (next < 0) {
+        myDelta[0][c] = 0;
+      }
+      else {
+        fail[next] = 0;
+        queue[tail++] = next;
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      if (myOutput[state] < 0) myOutput[state] = myOutput[fail[state]];
+      for (int c = 0; c < ALPHABET; c++) {
+        int next = myDelta[state][c];
+        if (next < 0) {
+          myDelta[state][c] = myDelta[fail[state]][c];
+        }
+        else {
+          fail[next] = myDelta[fail[state]][c];
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  public void feed(@NotNull CharSequence chunk) {
+    for (int i = 0, len = chunk.length(); i < len; i++) {
+      char c = chunk.charAt(i);
+      if (myCapturing != null) {
+        if (c == '\n' || c == '\r') {
+          finishCapture();
+        }
+        else if (myPayload.length() < MAX_PAYLOAD) {
+          myPayload.append(c);
+        }
+        continue;
+      }
+      myState = c < ALPHABET ? myDelta[myState][c] : 0;
+      int m = myOutput[myState];
+      if (m >= 0) {
+        myCapturing = myMarkers[m];
+        myState = 0;
+      }
+    }
+  }
+
+  /**
+   * Reports a marker whose line was not terminated before the stream ended.
+   */
+  public void flush() {
+    if (myCapturing != null) finishCapture();
+    myState = 0;
+  }
+
+  private void finishCapture() {
+    Marker marker = myCapturing;
+    String payload = myPayload.toString().trim();
+    myCapturing = null;
+    myPayload.setLength(0);
+    myListener.markerFound(marker, payload);
+  }
+
+  public enum Marker {
+    DEBUG_INVITATION("Remote JDBC process is ready for debug: "),
+    DATA_SOURCE_STARTED("##dg-data-source-started "),
+    DATA_SOURCE_FINISHED("##dg-data-source-finished "),
+    TEST_TIMING("##dg-test-timing ");
+
+    public final String text;
+
+    Marker(@NotNull String text) {
+      this.text = text;
+    }
+  }
+
+  public interface Listener {
+    void markerFound(@NotNull Marker marker, @NotNull String payload);
+  }
+}
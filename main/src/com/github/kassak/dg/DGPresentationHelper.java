@@ -3,8 +3,17 @@ package com.github.kassak.dg;
 import com.intellij.database.Dbms;
 
 import javax.swing.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DGPresentationHelper implements DGTestUtils.PresentationHelper {
+  private static final int MAX_DETECTED = 8192;
+
+  /**
+   * Driver and artifact ids repeat across items and {@link Dbms#fromString} is a scan over all DBMS names.
+   */
+  private final ConcurrentMap<String, Dbms> myDetected = new ConcurrentHashMap<>();
+
   @Override
   public Icon getIcon(String dbmsName) {
     Dbms dbms = Dbms.byName(dbmsName);
@@ -13,7 +22,13 @@ public class DGPresentationHelper implements DGTestUtils.PresentationHelper {
 
   @Override
   public Icon detectIcon(String text) {
-    Dbms dbms = Dbms.fromString(text);
+    if (text == null) return null;
+    Dbms dbms = myDetected.get(text);
+    if (dbms == null) {
+      if (myDetected.size() >= MAX_DETECTED) myDetected.clear();
+      dbms = Dbms.fromString(text);
+      myDetected.put(text, dbms);
+    }
     return dbms == Dbms.UNKNOWN ? null : dbms.getIcon();
   }
 }
@@ -0,0 +1,147 @@
+package com.github.kassak.dg;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.ProgramRunnerUtil;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.configurations.ConfigurationFactory;
+import com.intellij.execution.executors.DefaultDebugExecutor;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.remote.RemoteConfiguration;
+import com.intellij.execution.remote.RemoteConfigurationType;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.runners.ExecutionEnvironmentBuilder;
+import com.intellij.execution.runners.ProgramRunner;
+import com.intellij.execution.ui.RunContentDescriptor;
+import com.intellij.execution.ui.RunContentManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remote debugger sessions for JDBC processes spawned by tests, one per port.
+ * Repeated invitations for a live session are ignored, configurations are reused per port,
+ * and sessions are detached and closed when the test process which announced them ends.
+ */
+public class DGRemoteDebugSessions implements Disposable {
+  private static final Logger LOG = Logger.getInstance(DGRemoteDebugSessions.class);
+
+  private final Project myProject;
+  private final Map<String, RunnerAndConfigurationSettings> myConfigurations = new ConcurrentHashMap<>();
+  private final Map<String, Session> mySessions = new ConcurrentHashMap<>();
+
+  @NotNull
+  public static DGRemoteDebugSessions getInstance(@NotNull Project project) {
+    return project.getService(DGRemoteDebugSessions.class);
+  }
+
+  public DGRemoteDebugSessions(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * Schedules an attach and returns immediately, safe to call from process output listeners.
+   */
+  public void attach(@NotNull ProcessHandler parent, @NotNull String port) {
+    Session session = new Session(port);
+    if (mySessions.putIfAbsent(port, session) != null) return;
+    parent.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void processTerminated(@NotNull ProcessEvent event) {
+        close(session);
+      }
+    });
+    if (parent.isProcessTerminated()) {
+      close(session);
+      return;
+    }
+    ApplicationManager.getApplication().invokeLater(() -> launch(session), myProject.getDisposed());
+  }
+
+  private void launch(@NotNull Session session) {
+    if (session.closed) {
+      mySessions.remove(session.port, session);
+      return;
+    }
+    RunnerAndConfigurationSettings settings = myConfigurations.computeIfAbsent(session.port, this::createConfiguration);
+    try {
+      ExecutionEnvironment env = ExecutionEnvironmentBuilder.create(DefaultDebugExecutor.getDebugExecutorInstance(), settings)
+        .build(new ProgramRunner.Callback() {
+          @Override
+          public void processStarted(@Nullable RunContentDescriptor descriptor) {
+            session.descriptor = descriptor;
+            ProcessHandler handler = descriptor == null ? null : descriptor.getProcessHandler();
+            if (handler == null) {
+              mySessions.remove(session.port, session);
+              return;
+            }
+            handler.addProcessListener(new ProcessAdapter() {
+              @Override
+              public void processTerminated(@NotNull ProcessEvent event) {
+                mySessions.remove(session.port, session);
+              }
+            });
+            if (session.closed) close(session);
+          }
+
+          @Override
+          public void processNotStarted(@Nullable Throwable error) {
+            mySessions.remove(session.port, session);
+          }
+        });
+      ProgramRunnerUtil.executeConfiguration(env, false, true);
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Cannot attach to remote JDBC process at " + session.port, e);
+      mySessions.remove(session.port, session);
+    }
+  }
+
+  @NotNull
+  private RunnerAndConfigurationSettings createConfiguration(@NotNull String port) {
+    ConfigurationFactory factory = RemoteConfigurationType.getInstance().getConfigurationFactories()[0];
+    RunnerAndConfigurationSettings settings = RunManager.getInstance(myProject).createConfiguration("remote jdbc debug at " + port, factory);
+    ((RemoteConfiguration)settings.getConfiguration()).PORT = port;
+    return settings;
+  }
+
+  private void close(@NotNull Session session) {
+    session.closed = true;
+    mySessions.remove(session.port, session);
+    RunContentDescriptor descriptor = session.descriptor;
+    if (descriptor == null) return;
+    ApplicationManager.getApplication().invokeLater(() -> {
+      ProcessHandler handler = descriptor.getProcessHandler();
+      if (handler != null && !handler.isProcessTerminated()) handler.detachProcess();
+      RunContentManager.getInstance(myProject).removeRunContent(DefaultDebugExecutor.getDebugExecutorInstance(), descriptor);
+    }, myProject.getDisposed());
+  }
+
+  @Override
+  public void dispose() {
+    for (Session session : new ArrayList<>(mySessions.values())) {
+      session.closed = true;
+    }
+    mySessions.clear();
+    myConfigurations.clear();
+  }
+
+  private static final class Session {
+    final String port;
+    volatile RunContentDescriptor descriptor;
+    volatile boolean closed;
+
+    Session(@NotNull String port) {
+      this.port = port;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Splits data sources into shards, each shard holds a single dbms so that per-dbms concurrency is bounded by shard count.
+ * Shards are balanced by durations from {@link DGTestHistory} when known.
+ */
+public final class DGShardPlanner {
+  private static final String UNKNOWN_DBMS = "UNKNOWN";
+
+  private DGShardPlanner() {
+  }
+
+  @NotNull
+  public static List<Shard> plan(@NotNull Collection<DGTestDataSource> dataSources, int shardsPerDbms) {
+    return plan(dataSources, shardsPerDbms, uuid -> -1);
+  }
+
+  /**
+   * Longest processing time first: within a dbms, data sources are taken slowest first and put into the least loaded shard.
+   * Shards come out slowest first and list their data sources slowest first, so long runs start early.
+   * Unknown (negative) durations count as 1.
+   */
+  @NotNull
+  public static List<Shard> plan(@NotNull Collection<DGTestDataSource> dataSources, int shardsPerDbms, @NotNull ToLongFunction<String> durations) {
+    Map<String, SortedSet<String>> byDbms = new TreeMap<>();
+    for (DGTestDataSource ds : dataSources) {
+      byDbms.computeIfAbsent(StringUtil.notNullize(ds.dbms, UNKNOWN_DBMS), k -> new TreeSet<>(StringUtil::naturalCompare)).add(ds.uuid);
+    }
+    List<Shard> res = new ArrayList<>();
+    byDbms.forEach((dbms, uuids) -> {
+      Map<String, Long> cost = new HashMap<>();
+      for (String uuid : uuids) cost.put(uuid, Math.max(1, durations.applyAsLong(uuid)));
+      List<String> ordered = new ArrayList<>(uuids);
+      ordered.sort(Comparator.comparingLong((String uuid) -> cost.get(uuid)).reversed());
+      int count = Math.max(1, Math.min(shardsPerDbms, uuids.size()));
+      PriorityQueue<Bin> bins = new PriorityQueue<>(Comparator.comparingLong((Bin b) -> b.load).thenComparingInt(b -> b.index));
+      for (int i = 0; i < count; i++) bins.add(new Bin(i));
+      for (String uuid : ordered) {
+        Bin bin = bins.poll();
+        bin.uuids.add(uuid);
+        bin.load += cost.get(uuid);
+        bins.add(bin);
+      }
+      List<Bin> sorted = new ArrayList<>(bins);
+      sorted.sort(Comparator.comparingInt(b -> b.index));
+      for (Bin bin : sorted) {
+        String name = count == 1 ? dbms : dbms + " " + (bin.index + 1) + "/" + count;
+        res.add(new Shard(name, dbms, bin.uuids, bin.load));
+      }
+    });
+    res.sort(Comparator.comparingLong(Shard::load).reversed());
+    return res;
+  }
+
+  private static final class Bin {
+    final int index;
+    final List<String> uuids = new ArrayList<>();
+    long load;
+
+    Bin(int index) {
+      this.index = index;
+    }
+  }
+
+  public record Shard(@NotNull String name, @NotNull String dbms, @NotNull List<String> uuids, long load) {
+    /**
+     * Regex matching exactly the shard uuids, passed as {@code db.filter}.
+     */
+    @NotNull
+    public String getFilter() {
+      StringJoiner res = new StringJoiner("|");
+      for (String uuid : uuids) res.add(Pattern.quote(uuid));
+      return res.toString();
+    }
+  }
+}
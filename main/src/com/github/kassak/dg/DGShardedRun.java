@@ -0,0 +1,436 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGShardPlanner.Shard;
+import com.intellij.execution.*;
+import com.intellij.execution.configurations.RunConfiguration;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.execution.configurations.RunProfileState;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputType;
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.runners.ExecutionEnvironmentBuilder;
+import com.intellij.execution.testframework.sm.SMTestRunnerConnectionUtil;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerConsoleProperties;
+import com.intellij.execution.testframework.ui.BaseTestsOutputConsoleView;
+import com.intellij.execution.ui.ExecutionConsole;
+import com.intellij.execution.ui.RunContentDescriptor;
+import com.intellij.execution.ui.RunContentManager;
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.actionSystem.impl.SimpleDataContext;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a test configuration once per shard, each in its own JVM with a narrowed {@code db.filter},
+ * keeping at most the configured number of shards running at once. Before launch tasks run once, before the first shard.
+ * Shards report into a single test console, where each one is a suite of its own.
+ */
+public class DGShardedRun {
+  private static final Logger LOG = Logger.getInstance(DGShardedRun.class);
+  public static final Key<Shard> SHARD = Key.create("DG_SHARD");
+
+  private final Project myProject;
+  private final RunnerAndConfigurationSettings mySettings;
+  private final String myTestClass;
+  private final Queue<Shard> myPending;
+  private final int myTotal;
+  private int myRunning;
+  private final int myMaxParallel;
+  private final ShardsProcessHandler myHandler = new ShardsProcessHandler();
+  private final Set<ProcessHandler> myShardHandlers = ConcurrentHashMap.newKeySet();
+  private int myShardCount;
+  private volatile boolean myStopped;
+  private volatile boolean myFailed;
+
+  private DGShardedRun(@NotNull Project project, @NotNull RunnerAndConfigurationSettings settings, @NotNull List<Shard> shards, int maxParallel) {
+    myProject = project;
+    mySettings = settings;
+    myTestClass = DGTestHistory.getTestClass(settings.getConfiguration());
+    myPending = new ArrayDeque<>(shards);
+    myTotal = shards.size();
+    myMaxParallel = Math.max(1, maxParallel);
+  }
+
+  /**
+   * Must be called on EDT.
+   */
+  public static void start(@NotNull Project project, @NotNull RunnerAndConfigurationSettings settings, @NotNull List<Shard> shards, int maxParallel) {
+    DGShardedRun run = new DGShardedRun(project, settings, shards, maxParallel);
+    if (!run.showConsole()) return;
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      boolean ready = run.runBeforeRunTasks();
+      ApplicationManager.getApplication().invokeLater(() -> {
+        if (!ready) {
+          run.myFailed = true;
+          run.myStopped = true;
+        }
+        run.launchNext();
+      });
+    });
+  }
+
+  /**
+   * Plans shards of {@code dataSources} balanced by recorded durations of the configuration's test class.
+   */
+  @NotNull
+  public static List<Shard> plan(@NotNull Project project, @NotNull RunnerAndConfigurationSettings settings,
+                                 @NotNull Collection<DGTestDataSources.DGTestDataSource> dataSources, int shardsPerDbms) {
+    DGTestHistory history = DGTestHistory.getInstance(project);
+    String testClass = DGTestHistory.getTestClass(settings.getConfiguration());
+    return DGShardPlanner.plan(dataSources, shardsPerDbms, uuid -> history.estimate(testClass, uuid));
+  }
+
+  /**
+   * Id based test tree of the configuration's test framework, fed by {@link #myHandler}.
+   */
+  private boolean showConsole() {
+    if (!(mySettings.getConfiguration() instanceof JavaTestConfigurationBase configuration)) return false;
+    Executor executor = DefaultRunExecutor.getRunExecutorInstance();
+    SMTRunnerConsoleProperties properties = configuration.createTestConsoleProperties(executor);
+    properties.setIdBasedTestTree(true);
+    BaseTestsOutputConsoleView console = SMTestRunnerConnectionUtil.createAndAttachConsole(properties.getTestFrameworkName(), myHandler, properties);
+    RunContentDescriptor descriptor = new RunContentDescriptor(console, myHandler, console.getComponent(),
+                                                               mySettings.getName() + " [" + myTotal + " shards]");
+    RunContentManager.getInstance(myProject).showRunContent(executor, descriptor);
+    myHandler.startNotify();
+    myHandler.print(ServiceMessage.asString("testingStarted", Map.of()) + "\n", ProcessOutputTypes.STDOUT);
+    myHandler.print(ServiceMessage.asString("rootName", Map.of("name", mySettings.getName())) + "\n", ProcessOutputTypes.STDOUT);
+    return true;
+  }
+
+  /**
+   * Shards are executed without before launch tasks, so these of the configuration run here, once for all of them.
+   * Providers block until their task is done, must not be called on EDT.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private boolean runBeforeRunTasks() {
+    RunConfiguration configuration = mySettings.getConfiguration();
+    try {
+      ExecutionEnvironment env = ExecutionEnvironmentBuilder.create(DefaultRunExecutor.getRunExecutorInstance(), mySettings).build();
+      DataContext context = SimpleDataContext.getProjectContext(myProject);
+      for (BeforeRunTask<?> task : configuration.getBeforeRunTasks()) {
+        if (myStopped || myProject.isDisposed()) return false;
+        if (!task.isEnabled()) continue;
+        BeforeRunTaskProvider provider = BeforeRunTaskProvider.getProvider(myProject, task.getProviderId());
+        if (provider == null) continue;
+        if (!provider.executeTask(context, configuration, env, task)) {
+          myHandler.print("Before launch task '" + provider.getName() + "' failed, no shards are started\n", ProcessOutputTypes.STDERR);
+          return false;
+        }
+      }
+      return true;
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Cannot run before launch tasks of " + mySettings.getName(), e);
+      myHandler.print("Cannot run before launch tasks: " + e.getMessage() + "\n", ProcessOutputTypes.STDERR);
+      return false;
+    }
+  }
+
+  /**
+   * Must be called on EDT.
+   */
+  private void launchNext() {
+    if (myProject.isDisposed()) myPending.clear();
+    while (myRunning < myMaxParallel && !myPending.isEmpty() && !myStopped) {
+      Shard shard = myPending.poll();
+      myRunning++;
+      if (!launch(shard)) {
+        myRunning--;
+        myFailed = true;
+        myHandler.countTests(0, true);
+      }
+    }
+    if (myRunning == 0 && (myPending.isEmpty() || myStopped)) {
+      myHandler.finish(myFailed ? 1 : 0);
+    }
+  }
+
+  /**
+   * Executes the shard state directly, without a run tab and before launch tasks. The shard test console is only there
+   * because the state creates one, it is dropped when the shard ends.
+   */
+  private boolean launch(@NotNull Shard shard) {
+    RunConfiguration copy = mySettings.getConfiguration().clone();
+    copy.setName(mySettings.getName() + " [" + shard.name() + "]");
+    if (!(copy instanceof RunConfigurationBase<?> base)) return false;
+    base.putUserData(SHARD, shard);
+    RunnerAndConfigurationSettings settings = RunManager.getInstance(myProject).createConfiguration(copy, mySettings.getFactory());
+    ShardOutput output = new ShardOutput(++myShardCount, shard.name());
+    try {
+      ExecutionEnvironment env = ExecutionEnvironmentBuilder.create(DefaultRunExecutor.getRunExecutorInstance(), settings).build();
+      RunProfileState state = env.getState();
+      ExecutionResult result = state == null ? null : state.execute(env.getExecutor(), env.getRunner());
+      ProcessHandler handler = result == null ? null : result.getProcessHandler();
+      if (handler == null) return false;
+      ExecutionConsole shardConsole = result.getExecutionConsole();
+      myShardHandlers.add(handler);
+      myHandler.print(output.started(), ProcessOutputTypes.STDOUT);
+      long started = System.currentTimeMillis();
+      handler.addProcessListener(new ProcessAdapter() {
+        @Override
+        public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+          String text = event.getText();
+          if (text != null) output.feed(text, outputType);
+        }
+
+        @Override
+        public void processTerminated(@NotNull ProcessEvent event) {
+          myShardHandlers.remove(handler);
+          output.flush();
+          myHandler.print(output.finished(), ProcessOutputTypes.STDOUT);
+          if (event.getExitCode() != 0) myFailed = true;
+          else if (handler.getUserData(DGConfigurationExtension.DATA_SOURCE_TIMINGS) == null) {
+            recordDurations(shard, System.currentTimeMillis() - started);
+          }
+          finished(shardConsole);
+        }
+      });
+      handler.startNotify();
+      return true;
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Cannot start shard " + shard.name() + " of " + myTotal, e);
+      myHandler.print("Cannot start shard " + shard.name() + ": " + e.getMessage() + "\n", ProcessOutputTypes.STDERR);
+      return false;
+    }
+  }
+
+  /**
+   * Spreads the shard wall time over its data sources in proportion to their planned cost.
+   * Only used when the test output did not report timings per data source.
+   */
+  private void recordDurations(@NotNull Shard shard, long millis) {
+    DGTestHistory history = DGTestHistory.getInstance(myProject);
+    long[] estimates = new long[shard.uuids().size()];
+    long total = 0;
+    for (int i = 0; i < estimates.length; i++) {
+      estimates[i] = Math.max(1, history.estimate(myTestClass, shard.uuids().get(i)));
+      total += estimates[i];
+    }
+    for (int i = 0; i < estimates.length; i++) {
+      history.record(myTestClass, shard.uuids().get(i), millis * estimates[i] / Math.max(1, total));
+    }
+  }
+
+  private void finished(@Nullable ExecutionConsole shardConsole) {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (shardConsole != null) Disposer.dispose(shardConsole);
+      myRunning--;
+      launchNext();
+    });
+  }
+
+  /**
+   * Stops launching shards and stops or detaches the running ones, the run ends when the last of them does.
+   */
+  private void stop(boolean detach) {
+    myStopped = true;
+    for (ProcessHandler handler : myShardHandlers) {
+      if (detach) handler.detachProcess();
+      else handler.destroyProcess();
+    }
+  }
+
+  /**
+   * Rewrites the output of one shard for the common test tree. Node ids get a shard prefix and top level nodes
+   * go under a suite standing for the shard. Events without node ids get them from the stack of running nodes,
+   * which also tells which test plain output belongs to.
+   */
+  private final class ShardOutput {
+    private static final String NODE_ID = "nodeId";
+    private static final String PARENT_NODE_ID = "parentNodeId";
+    private static final Set<String> STARTED = Set.of("testSuiteStarted", "testStarted");
+    private static final Set<String> FINISHED = Set.of("testSuiteFinished", "testFinished");
+    private static final Set<String> NODE_EVENTS = Set.of("testFailed", "testIgnored", "testStdOut", "testStdErr");
+    /**
+     * Events of the whole run, {@link ShardsProcessHandler} sends them once for all shards.
+     */
+    private static final Set<String> RUN_EVENTS = Set.of("testingStarted", "testingFinished", "testCount", "rootName");
+
+    private final String myPrefix;
+    private final String mySuiteId;
+    private final String myName;
+    private final Deque<String> myNodes = new ArrayDeque<>();
+    private final Map<Key<?>, StringBuilder> myLines = new HashMap<>();
+    private int myLastId;
+    private boolean myCounted;
+
+    ShardOutput(int index, @NotNull String name) {
+      myPrefix = "shard" + index + ":";
+      mySuiteId = "shard" + index;
+      myName = name;
+    }
+
+    @NotNull
+    String started() {
+      return ServiceMessage.asString("testSuiteStarted", Map.of("name", myName, NODE_ID, mySuiteId, PARENT_NODE_ID, "0")) + "\n";
+    }
+
+    @NotNull
+    synchronized String finished() {
+      if (!myCounted) {
+        myCounted = true;
+        myHandler.countTests(0, true);
+      }
+      return ServiceMessage.asString("testSuiteFinished", Map.of("name", myName, NODE_ID, mySuiteId)) + "\n";
+    }
+
+    /**
+     * Called from the shard output reader, only complete lines are passed on so that shards do not break each other's messages.
+     */
+    synchronized void feed(@NotNull String text, @NotNull Key<?> outputType) {
+      if (outputType == ProcessOutputTypes.SYSTEM) {
+        myHandler.print(text, outputType);
+        return;
+      }
+      StringBuilder line = myLines.computeIfAbsent(outputType, k -> new StringBuilder());
+      int start = 0;
+      for (int end = text.indexOf('\n'); end >= 0; start = end + 1, end = text.indexOf('\n', start)) {
+        line.append(text, start, end + 1);
+        print(rewrite(line.toString(), outputType), outputType);
+        line.setLength(0);
+      }
+      line.append(text, start, text.length());
+    }
+
+    synchronized void flush() {
+      myLines.forEach((outputType, line) -> {
+        if (line.length() > 0) print(rewrite(line.append('\n').toString(), outputType), outputType);
+      });
+      myLines.clear();
+    }
+
+    private void print(@NotNull String text, @NotNull Key<?> outputType) {
+      if (!text.isEmpty()) myHandler.print(text, outputType);
+    }
+
+    @NotNull
+    private String rewrite(@NotNull String line, @NotNull Key<?> outputType) {
+      ServiceMessage message = null;
+      try {
+        message = ServiceMessage.parse(line.trim());
+      }
+      catch (ParseException ignored) {
+      }
+      if (message == null) {
+        String nodeId = myNodes.peek();
+        if (nodeId == null) return line;
+        String name = ProcessOutputType.isStderr(outputType) ? "testStdErr" : "testStdOut";
+        return ServiceMessage.asString(name, Map.of(NODE_ID, nodeId, "out", line)) + "\n";
+      }
+      if (message.getArgument() != null) return line;
+      String name = message.getMessageName();
+      if (RUN_EVENTS.contains(name)) {
+        if ("testCount".equals(name)) {
+          myHandler.countTests(StringUtil.parseInt(message.getAttributes().get("count"), 0), !myCounted);
+          myCounted = true;
+        }
+        return "";
+      }
+      Map<String, String> attributes = new LinkedHashMap<>(message.getAttributes());
+      String nodeId = attributes.get(NODE_ID);
+      if (nodeId != null) {
+        nodeId = myPrefix + nodeId;
+        String parentId = attributes.get(PARENT_NODE_ID);
+        if (parentId != null) attributes.put(PARENT_NODE_ID, "0".equals(parentId) ? mySuiteId : myPrefix + parentId);
+      }
+      else if (STARTED.contains(name)) {
+        nodeId = myPrefix + "n" + ++myLastId;
+        attributes.put(PARENT_NODE_ID, Objects.requireNonNullElse(myNodes.peek(), mySuiteId));
+      }
+      else if (FINISHED.contains(name) || NODE_EVENTS.contains(name)) {
+        nodeId = Objects.requireNonNullElse(myNodes.peek(), mySuiteId);
+      }
+      else {
+        return line;
+      }
+      attributes.put(NODE_ID, nodeId);
+      if (STARTED.contains(name)) myNodes.push(nodeId);
+      else if (FINISHED.contains(name)) myNodes.remove(nodeId);
+      return ServiceMessage.asString(name, attributes) + "\n";
+    }
+  }
+
+  /**
+   * Process of the whole run as seen by the test console: output of all shards, ends after the last shard.
+   */
+  private final class ShardsProcessHandler extends ProcessHandler {
+    /**
+     * Serializes shard lines, the console parses its input as a single stream.
+     */
+    synchronized void print(@NotNull String text, @NotNull Key<?> outputType) {
+      notifyTextAvailable(text, outputType);
+    }
+
+    private volatile boolean myDetach;
+    private int myTestCount;
+    private int myCountedShards;
+
+    /**
+     * Sums up test counts of the shards. The console gets the total once every shard reported its count or ended without one,
+     * counts reported after that are passed on as they come, the console adds them up.
+     */
+    synchronized void countTests(int count, boolean firstOfShard) {
+      myTestCount += count;
+      if (firstOfShard) myCountedShards++;
+      if (myCountedShards < myTotal) return;
+      if (myTestCount > 0) {
+        print(ServiceMessage.asString("testCount", Map.of("count", String.valueOf(myTestCount))) + "\n", ProcessOutputTypes.STDOUT);
+      }
+      myTestCount = 0;
+    }
+
+    void finish(int exitCode) {
+      if (isProcessTerminated()) return;
+      print(ServiceMessage.asString("testingFinished", Map.of()) + "\n", ProcessOutputTypes.STDOUT);
+      if (myDetach) notifyProcessDetached();
+      else notifyProcessTerminated(exitCode);
+    }
+
+    @Override
+    protected void destroyProcessImpl() {
+      stopShards(false);
+    }
+
+    @Override
+    protected void detachProcessImpl() {
+      stopShards(true);
+    }
+
+    private void stopShards(boolean detach) {
+      ApplicationManager.getApplication().invokeLater(() -> {
+        myDetach = detach;
+        stop(detach);
+        launchNext();
+      });
+    }
+
+    @Override
+    public boolean detachIsDefault() {
+      return false;
+    }
+
+    @Nullable
+    @Override
+    public OutputStream getProcessInput() {
+      return null;
+    }
+  }
+}
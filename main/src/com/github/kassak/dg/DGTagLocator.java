@@ -0,0 +1,87 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectLocator;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Points to a config tag by file and start offset, PSI is only built when the tag is asked for.
+ * While the file keeps the stamp of the indexed text the offset was taken at, the tag at the offset is the one.
+ * {@link DGConfigModel} moves locators of items an edit did not touch, so a stale locator belongs to a replaced item
+ * or to a file the model has not re-read yet. Its tag is then found through {@link DGConfigIndex} entries of the file with the same id.
+ * Smart pointers are only created on demand, see {@link DGTestUtils.ConfigItem#createSourcePointer}.
+ */
+public final class DGTagLocator {
+  public static final long UNKNOWN_STAMP = -1;
+
+  public final VirtualFile file;
+  private volatile int myOffset;
+  private volatile long myStamp;
+
+  public DGTagLocator(@NotNull VirtualFile file, int offset, long stamp) {
+    this.file = file;
+    myOffset = offset;
+    myStamp = stamp;
+  }
+
+  public int getOffset() {
+    return myOffset;
+  }
+
+  public long getStamp() {
+    return myStamp;
+  }
+
+  /**
+   * Called by the model under its lock. The stamp is reset first, so a reader which sees the same stamp
+   * before and after reading the offset has the offset taken at that stamp.
+   */
+  void moveTo(int offset, long stamp) {
+    myStamp = UNKNOWN_STAMP;
+    myOffset = offset;
+    myStamp = stamp;
+  }
+
+  /**
+   * @param id        id of the owner item, the key of {@link DGConfigIndex}
+   * @param condition tells the owner's tag from other tags of items with the same id
+   */
+  @Nullable
+  public XmlTag resolve(@NotNull String id, @NotNull Condition<? super XmlTag> condition) {
+    if (!file.isValid()) return null;
+    Project project = ProjectLocator.getInstance().guessProjectForFile(file);
+    PsiFile psiFile = project == null ? null : PsiManager.getInstance(project).findFile(file);
+    if (psiFile == null) return null;
+    long stamp = DGConfigModel.getStamp(project, file);
+    long positionStamp = myStamp;
+    XmlTag tag = findTag(psiFile, myOffset);
+    if (positionStamp == stamp && myStamp == stamp) return tag;
+    if (tag != null && condition.value(tag)) return tag;
+    if (DumbService.isDumb(project)) return null;
+    for (List<DGConfigIndex.Entry> entries : FileBasedIndex.getInstance().getValues(DGConfigIndex.NAME, id, GlobalSearchScope.fileScope(project, file))) {
+      for (DGConfigIndex.Entry entry : entries) {
+        XmlTag candidate = findTag(psiFile, entry.offset);
+        if (candidate != null && condition.value(candidate)) return candidate;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static XmlTag findTag(@NotNull PsiFile psiFile, int offset) {
+    XmlTag tag = PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), XmlTag.class, false);
+    return tag != null && tag.getTextRange().getStartOffset() == offset ? tag : null;
+  }
+}
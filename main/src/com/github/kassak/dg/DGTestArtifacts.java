@@ -1,32 +1,58 @@
 package com.github.kassak.dg;
 
 import com.intellij.icons.AllIcons;
-import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ContentFolder;
-import com.intellij.openapi.util.NullableLazyValue;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.SmartPointerManager;
-import com.intellij.psi.SmartPsiElementPointer;
-import com.intellij.psi.util.CachedValueProvider;
-import com.intellij.psi.util.CachedValuesManager;
-import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
-import com.intellij.util.ObjectUtils;
-import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.SmartList;
 import com.intellij.util.containers.JBIterable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.jps.model.java.JavaResourceRootType;
 
 import javax.swing.*;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 public class DGTestArtifacts implements DGTestUtils.ConfigFile<DGTestArtifacts.DGTestArtifact> {
+  public static final DGTestUtils.ConfigParser<DGTestArtifact, DGTestArtifacts> PARSER = new DGTestUtils.ConfigParser<>() {
+    @NotNull
+    @Override
+    public String getItemTag() {
+      return "artifact";
+    }
+
+    @NotNull
+    @Override
+    public List<DGTestArtifact> parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
+      return parseAll(scanner, file, stamp);
+    }
+
+    @NotNull
+    @Override
+    public DGTestArtifacts create(@NotNull String fileName, @NotNull List<DGTestArtifact> items) {
+      return new DGTestArtifacts(fileName, items);
+    }
+
+    @Override
+    public String @NotNull [] externalize(@NotNull DGTestArtifact item) {
+      String[] res = new String[2 + item.coordinates.size()];
+      res[0] = item.id;
+      res[1] = item.version;
+      for (int i = 0; i < item.coordinates.size(); i++) {
+        res[2 + i] = item.coordinates.get(i);
+      }
+      return res;
+    }
+
+    @NotNull
+    @Override
+    public DGTestArtifact internalize(String @NotNull [] fields, @NotNull DGTagLocator locator) {
+      return new DGTestArtifact(fields[0], fields[1], List.of(Arrays.copyOfRange(fields, 2, fields.length)), locator);
+    }
+  };
+
   public final String fileName;
   public final List<DGTestArtifact> drivers;
 
@@ -35,56 +61,57 @@ public class DGTestArtifacts implements DGTestUtils.ConfigFile<DGTestArtifacts.D
     this.drivers = drivers;
   }
 
-  @NotNull
-  public static JBIterable<DGTestArtifacts> list(@NotNull Project project) {
-    JBIterable<VirtualFile> td = DGTestUtils.getTestContents(project)
-      .flatten(e -> e.getSourceFolders(JavaResourceRootType.TEST_RESOURCE))
-      .filterMap(ContentFolder::getFile)
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> o.getName().endsWith("test-database-artifacts.xml")));
-    JBIterable<VirtualFile> real = DGTestUtils.getContent(project, "intellij.database.connectivity")
-      .flatten(e -> e.getSourceFolders(JavaResourceRootType.RESOURCE))
-      .filterMap(ContentFolder::getFile)
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> o.getName().equals("resources")))
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> o.getName().equals("database-artifacts.xml")));
-
-    PsiManager psiManager = PsiManager.getInstance(project);
-    return td.append(real).filterMap(psiManager::findFile).map(f -> CachedValuesManager.getCachedValue(f, () -> CachedValueProvider.Result.create(parse(f), f)));
-  }
-
-  @NotNull
-  private static DGTestArtifacts parse(@NotNull PsiFile f) {
-    return new DGTestArtifacts(f.getName(), extract(f));
+  public static boolean isDatabaseArtifacts(@NotNull String name) {
+    return name.endsWith("database-artifacts.xml");
   }
 
   @NotNull
-  private static List<DGTestArtifact> extract(@NotNull PsiFile f) {
-    XmlFile xml = ObjectUtils.tryCast(f, XmlFile.class);
-    XmlTag rootTag = xml == null ? null : xml.getRootTag();
-    if (rootTag == null) return Collections.emptyList();
+  private static List<DGTestArtifact> parseAll(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
     List<DGTestArtifact> res = new ArrayList<>();
-    for (XmlTag artifact : rootTag.findSubTags("artifact")) {
-      DGTestArtifact parsed = parse(artifact, null);
-      if (parsed != null && parsed.version != null) ContainerUtil.addIfNotNull(res, parsed);
-      for (XmlTag version : artifact.findSubTags("version")) {
-        ContainerUtil.addIfNotNull(res, parse(version, parsed));
+    int depth = scanner.getDepth();
+    String id = getArtifactId(scanner.getAttribute("id"), scanner.getAttribute("name"), null);
+    String version = scanner.getAttribute("version");
+    List<String> coordinates = new SmartList<>();
+    if (id != null && version != null) res.add(new DGTestArtifact(id, version, coordinates, new DGTagLocator(file, scanner.getOffset(), stamp)));
+    List<String> versionCoordinates = null;
+    while (scanner.nextChild(depth)) {
+      int itemDepth = scanner.getDepth();
+      if (itemDepth == depth + 1) {
+        versionCoordinates = null;
+        if (scanner.isTag("version")) {
+          String versionId = getArtifactId(scanner.getAttribute("id"), scanner.getAttribute("name"), id);
+          if (versionId == null) continue;
+          versionCoordinates = new SmartList<>();
+          res.add(new DGTestArtifact(versionId, scanner.getAttribute("version"), versionCoordinates, new DGTagLocator(file, scanner.getOffset(), stamp)));
+        }
+        else {
+          addMavenCoordinate(scanner, coordinates);
+        }
+      }
+      else if (itemDepth == depth + 2 && versionCoordinates != null) {
+        addMavenCoordinate(scanner, versionCoordinates);
       }
-
     }
     return res;
   }
 
+  private static void addMavenCoordinate(@NotNull DGConfigXmlScanner scanner, @NotNull List<String> coordinates) {
+    if (!scanner.isTag("item") || !"maven".equals(scanner.getAttribute("type"))) return;
+    String url = scanner.getAttribute("url");
+    if (url != null) coordinates.add(url);
+  }
+
   @Nullable
-  private static DGTestArtifact parse(XmlTag art, DGTestArtifact parent) {
-    String id = art.getAttributeValue("id");
-    if (id == null) {
-      String name = art.getAttributeValue("name");
-      if (name != null) {
-        id = StringUtil.trimEnd(name.replaceAll("[^a-zA-Z0-9. _-]", ""), " 8");
-      }
+  static String getArtifactId(@NotNull XmlTag art, @Nullable String parentId) {
+    return getArtifactId(art.getAttributeValue("id"), art.getAttributeValue("name"), parentId);
+  }
+
+  @Nullable
+  static String getArtifactId(@Nullable String id, @Nullable String name, @Nullable String parentId) {
+    if (id == null && name != null) {
+      id = StringUtil.trimEnd(name.replaceAll("[^a-zA-Z0-9. _-]", ""), " 8");
     }
-    if (id == null && parent != null) id = parent.id;
-    String version = art.getAttributeValue("version");
-    return id == null ? null : new DGTestArtifact(id, version, art);
+    return id == null ? parentId : id;
   }
 
   @NotNull
@@ -102,15 +129,17 @@ public class DGTestArtifacts implements DGTestUtils.ConfigFile<DGTestArtifacts.D
   public static class DGTestArtifact implements DGTestUtils.ConfigItem {
     public final String id;
     public final String version;
-    public final SmartPsiElementPointer<XmlTag> source;
-    private final NullableLazyValue<Icon> myIcon;
+    /**
+     * {@code group:artifact:version} of the maven items of this version.
+     */
+    public final List<String> coordinates;
+    public final DGTagLocator source;
 
-    public DGTestArtifact(String id, String version, XmlTag source) {
+    public DGTestArtifact(String id, String version, @NotNull List<String> coordinates, @NotNull DGTagLocator source) {
       this.id = id;
       this.version = version;
-      this.source = SmartPointerManager.createPointer(source);
-      String id1 = this.id;
-      myIcon = DGTestUtils.createDbmsCorneredIcon(id1, AllIcons.Nodes.Artifact);
+      this.coordinates = coordinates;
+      this.source = source;
     }
 
 
@@ -122,13 +151,26 @@ public class DGTestArtifacts implements DGTestUtils.ConfigFile<DGTestArtifacts.D
 
     @Nullable
     public Icon getIcon() {
-      return myIcon.getValue();
+      return DGTestUtils.getDbmsCorneredIcon(id, AllIcons.Nodes.Artifact);
+    }
+
+    @NotNull
+    @Override
+    public DGTagLocator getLocator() {
+      return source;
     }
 
     @Nullable
     @Override
     public XmlTag getSource() {
-      return source.getElement();
+      return source.resolve(id, this::matches);
+    }
+
+    private boolean matches(@NotNull XmlTag tag) {
+      if (!Objects.equals(version, tag.getAttributeValue("version"))) return false;
+      if ("artifact".equals(tag.getName())) return id.equals(getArtifactId(tag, null));
+      XmlTag parent = tag.getParentTag();
+      return "version".equals(tag.getName()) && id.equals(getArtifactId(tag, parent == null ? null : getArtifactId(parent, null)));
     }
   }
 
@@ -1,6 +1,5 @@
 package com.github.kassak.dg;
 
-import com.github.kassak.dg.DGTestUtils.ConfigFile;
 import com.intellij.navigation.ChooseByNameContributorEx;
 import com.intellij.navigation.GotoClassContributor;
 import com.intellij.navigation.ItemPresentation;
@@ -8,7 +7,6 @@ import com.intellij.navigation.NavigationItem;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.Processor;
-import com.intellij.util.containers.JBIterable;
 import com.intellij.util.indexing.FindSymbolParameters;
 import com.intellij.util.indexing.IdFilter;
 import org.jetbrains.annotations.NotNull;
@@ -24,30 +22,15 @@ public class DGTestConfigEntityContributor implements GotoClassContributor, Choo
   public void processNames(@NotNull Processor<? super String> processor, @NotNull GlobalSearchScope scope, @Nullable IdFilter idFilter) {
     Project project = scope.getProject();
     if (project == null) return;
-    getConfigs(project)
-      .flatten(ConfigFile::getItems)
-      .map(ConfigItem::getName)
-      .unique()
-      .processEach(processor);
-  }
-
-  @NotNull
-  private JBIterable<ConfigFile<?>> getConfigs(Project project) {
-    return JBIterable.<ConfigFile<?>>from(DGTestDataSources.list(project))
-      .append(DGTestDrivers.list(project))
-      .append(DGTestArtifacts.list(project));
+    DGConfigModel.getInstance(project).getSnapshot().getNames().processNames(processor, scope, idFilter);
   }
 
   @Override
   public void processElementsWithName(@NotNull String s, @NotNull Processor<? super NavigationItem> processor, @NotNull FindSymbolParameters findSymbolParameters) {
     Project project = findSymbolParameters.getProject();
-    for (ConfigFile<?> file : getConfigs(project)) {
-      for (ConfigItem item : file.getItems()) {
-        if (s.equals(item.getName())) {
-          processor.process(asNavigationItem(item, file.getFileName()));
-        }
-      }
-    }
+    DGConfigModel.getInstance(project).getSnapshot().getNames()
+      .processItems(s, findSymbolParameters.getSearchScope(), findSymbolParameters.getIdFilter(),
+        item -> processor.process(asNavigationItem(item, item.getLocator().file.getName())));
   }
 
   @NotNull
@@ -1,30 +1,49 @@
 package com.github.kassak.dg;
 
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ContentFolder;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.SmartPointerManager;
-import com.intellij.psi.SmartPsiElementPointer;
-import com.intellij.psi.util.CachedValueProvider;
-import com.intellij.psi.util.CachedValuesManager;
-import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
-import com.intellij.util.ObjectUtils;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.JBIterable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.jps.model.java.JavaResourceRootType;
 
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class DGTestDataSources implements DGTestUtils.ConfigFile<DGTestDataSources.DGTestDataSource> {
+  public static final DGTestUtils.ConfigParser<DGTestDataSource, DGTestDataSources> PARSER = new DGTestUtils.ConfigParser<>() {
+    @NotNull
+    @Override
+    public String getItemTag() {
+      return "data-source";
+    }
+
+    @NotNull
+    @Override
+    public List<DGTestDataSource> parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
+      return ContainerUtil.createMaybeSingletonList(DGTestDataSources.parse(scanner, file, stamp));
+    }
+
+    @NotNull
+    @Override
+    public DGTestDataSources create(@NotNull String fileName, @NotNull List<DGTestDataSource> items) {
+      return new DGTestDataSources(fileName, items);
+    }
+
+    @Override
+    public String @NotNull [] externalize(@NotNull DGTestDataSource item) {
+      return new String[]{item.uuid, item.dbms, item.version, item.driverRef};
+    }
+
+    @NotNull
+    @Override
+    public DGTestDataSource internalize(String @NotNull [] fields, @NotNull DGTagLocator locator) {
+      return new DGTestDataSource(fields[0], fields[1], fields[2], fields[3], locator);
+    }
+  };
+
   public final String fileName;
   public final List<DGTestDataSource> dataSources;
 
@@ -37,40 +56,27 @@ public class DGTestDataSources implements DGTestUtils.ConfigFile<DGTestDataSourc
     return name.endsWith("test-data-sources.xml");
   }
 
-  @NotNull
-  public static JBIterable<DGTestDataSources> list(@NotNull Project project) {
-    JBIterable<VirtualFile> td = DGTestUtils.getTestContents(project)
-      .flatten(e -> e.getSourceFolders(JavaResourceRootType.TEST_RESOURCE))
-      .filterMap(ContentFolder::getFile)
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> isTestDataSource(o.getName())));
-    PsiManager psiManager = PsiManager.getInstance(project);
-    return td.filterMap(psiManager::findFile).map(f -> CachedValuesManager.getCachedValue(f, () -> CachedValueProvider.Result.create(parse(f), f)));
-  }
-
-  @NotNull
-  private static DGTestDataSources parse(@NotNull PsiFile f) {
-    return new DGTestDataSources(f.getName(), extract(f));
-  }
-
-  @NotNull
-  private static List<DGTestDataSource> extract(@NotNull PsiFile f) {
-    XmlFile xml = ObjectUtils.tryCast(f, XmlFile.class);
-    XmlTag rootTag = xml == null ? null : xml.getRootTag();
-    if (rootTag == null) return Collections.emptyList();
-    List<DGTestDataSource> res = new ArrayList<>();
-    for (XmlTag dataSource : rootTag.findSubTags("data-source")) {
-      ContainerUtil.addIfNotNull(res, parse(dataSource));
-    }
-    return res;
-  }
-
   @Nullable
-  private static DGTestDataSource parse(XmlTag ds) {
-    String uuid = ds.getAttributeValue("uuid");
-    XmlTag info = ds.findFirstSubTag("database-info");
-    String dbms = info == null ? null : info.getAttributeValue("dbms");
-    String version = info == null ? null : info.getAttributeValue("exact-version");
-    return uuid == null ? null : new DGTestDataSource(uuid, dbms, version, ds);
+  private static DGTestDataSource parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
+    int depth = scanner.getDepth();
+    int offset = scanner.getOffset();
+    String uuid = scanner.getAttribute("uuid");
+    String dbms = null;
+    String version = null;
+    String driverRef = null;
+    boolean infoFound = false;
+    while (scanner.nextChild(depth)) {
+      if (scanner.getDepth() != depth + 1) continue;
+      if (!infoFound && scanner.isTag("database-info")) {
+        infoFound = true;
+        dbms = scanner.getAttribute("dbms");
+        version = scanner.getAttribute("exact-version");
+      }
+      else if (driverRef == null && scanner.isTag("driver-ref")) {
+        driverRef = StringUtil.nullize(scanner.getText(), true);
+      }
+    }
+    return uuid == null ? null : new DGTestDataSource(uuid, dbms, version, driverRef, new DGTagLocator(file, offset, stamp));
   }
 
   @NotNull
@@ -89,13 +95,15 @@ public class DGTestDataSources implements DGTestUtils.ConfigFile<DGTestDataSourc
     public final String uuid;
     public final String dbms;
     public final String version;
-    public final SmartPsiElementPointer<XmlTag> source;
+    public final String driverRef;
+    public final DGTagLocator source;
 
-    public DGTestDataSource(@NotNull String uuid, String dbms, String version, XmlTag source) {
+    public DGTestDataSource(@NotNull String uuid, String dbms, String version, String driverRef, @NotNull DGTagLocator source) {
       this.uuid = uuid;
       this.dbms = dbms;
       this.version = version;
-      this.source = SmartPointerManager.createPointer(source);
+      this.driverRef = driverRef;
+      this.source = source;
     }
 
     @Nullable
@@ -110,10 +118,16 @@ public class DGTestDataSources implements DGTestUtils.ConfigFile<DGTestDataSourc
       return uuid;
     }
 
+    @NotNull
+    @Override
+    public DGTagLocator getLocator() {
+      return source;
+    }
+
     @Nullable
     @Override
     public XmlTag getSource() {
-      return source.getElement();
+      return source.resolve(uuid, tag -> "data-source".equals(tag.getName()) && uuid.equals(tag.getAttributeValue("uuid")));
     }
 
   }
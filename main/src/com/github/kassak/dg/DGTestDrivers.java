@@ -1,31 +1,48 @@
 package com.github.kassak.dg;
 
 import com.intellij.icons.AllIcons;
-import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ContentFolder;
-import com.intellij.openapi.util.NullableLazyValue;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.SmartPointerManager;
-import com.intellij.psi.SmartPsiElementPointer;
-import com.intellij.psi.util.CachedValueProvider;
-import com.intellij.psi.util.CachedValuesManager;
-import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
-import com.intellij.util.ObjectUtils;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.JBIterable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.jps.model.java.JavaResourceRootType;
 
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class DGTestDrivers implements DGTestUtils.ConfigFile<DGTestDrivers.DGTestDriver> {
+  public static final DGTestUtils.ConfigParser<DGTestDriver, DGTestDrivers> PARSER = new DGTestUtils.ConfigParser<>() {
+    @NotNull
+    @Override
+    public String getItemTag() {
+      return "driver";
+    }
+
+    @NotNull
+    @Override
+    public List<DGTestDriver> parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
+      return ContainerUtil.createMaybeSingletonList(DGTestDrivers.parse(scanner, file, stamp));
+    }
+
+    @NotNull
+    @Override
+    public DGTestDrivers create(@NotNull String fileName, @NotNull List<DGTestDriver> items) {
+      return new DGTestDrivers(fileName, items);
+    }
+
+    @Override
+    public String @NotNull [] externalize(@NotNull DGTestDriver item) {
+      return new String[]{item.id, item.parentId, item.artifactName, item.artifactVersion};
+    }
+
+    @NotNull
+    @Override
+    public DGTestDriver internalize(String @NotNull [] fields, @NotNull DGTagLocator locator) {
+      return new DGTestDriver(fields[0], fields[1], fields[2], fields[3], locator);
+    }
+  };
+
   public final String fileName;
   public final List<DGTestDriver> drivers;
 
@@ -38,48 +55,23 @@ public class DGTestDrivers implements DGTestUtils.ConfigFile<DGTestDrivers.DGTes
     return name.endsWith("-drivers.xml");
   }
 
-  @NotNull
-  public static JBIterable<DGTestDrivers> list(@NotNull Project project) {
-    JBIterable<VirtualFile> td = DGTestUtils.getTestContents(project)
-      .flatten(e -> e.getSourceFolders(JavaResourceRootType.TEST_RESOURCE))
-      .filterMap(ContentFolder::getFile)
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> o.getName().endsWith("test-database-drivers.xml")));
-    JBIterable<VirtualFile> real = DGTestUtils.findDGSubModules(project, "intellij.database")
-      .flatten(DGTestUtils::getModuleContent)
-      .flatten(e -> e.getSourceFolders(JavaResourceRootType.RESOURCE))
-      .filterMap(ContentFolder::getFile)
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> o.getName().equals("databaseDrivers")))
-      .flatten(f -> JBIterable.of(f.getChildren()).filter(o -> isTestDatabaseDrivers(o.getName())));
-
-    PsiManager psiManager = PsiManager.getInstance(project);
-    return td.append(real).filterMap(psiManager::findFile).map(f -> CachedValuesManager.getCachedValue(f, () -> CachedValueProvider.Result.create(parse(f), f)));
-  }
-
-  @NotNull
-  private static DGTestDrivers parse(@NotNull PsiFile f) {
-    return new DGTestDrivers(f.getName(), extract(f));
-  }
-
-  @NotNull
-  private static List<DGTestDriver> extract(@NotNull PsiFile f) {
-    XmlFile xml = ObjectUtils.tryCast(f, XmlFile.class);
-    XmlTag rootTag = xml == null ? null : xml.getRootTag();
-    if (rootTag == null) return Collections.emptyList();
-    List<DGTestDriver> res = new ArrayList<>();
-    for (XmlTag driver : rootTag.findSubTags("driver")) {
-      ContainerUtil.addIfNotNull(res, parse(driver));
-    }
-    return res;
-  }
-
   @Nullable
-  private static DGTestDriver parse(XmlTag dr) {
-    String id = dr.getAttributeValue("id");
-    String parentId = dr.getAttributeValue("based-on");
-    XmlTag artifact = dr.findFirstSubTag("artifact");
-    String artifactName = artifact == null ? null : artifact.getAttributeValue("name");
-    String artifactVersion = artifact == null ? null : artifact.getAttributeValue("version");
-    return id == null ? null : new DGTestDriver(id, parentId, artifactName, artifactVersion, dr);
+  private static DGTestDriver parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp) {
+    int depth = scanner.getDepth();
+    int offset = scanner.getOffset();
+    String id = scanner.getAttribute("id");
+    String parentId = scanner.getAttribute("based-on");
+    String artifactName = null;
+    String artifactVersion = null;
+    boolean artifactFound = false;
+    while (scanner.nextChild(depth)) {
+      if (!artifactFound && scanner.getDepth() == depth + 1 && scanner.isTag("artifact")) {
+        artifactFound = true;
+        artifactName = DGTestArtifacts.getArtifactId(scanner.getAttribute("id"), scanner.getAttribute("name"), null);
+        artifactVersion = scanner.getAttribute("version");
+      }
+    }
+    return id == null ? null : new DGTestDriver(id, parentId, artifactName, artifactVersion, new DGTagLocator(file, offset, stamp));
   }
 
   @NotNull
@@ -99,16 +91,14 @@ public class DGTestDrivers implements DGTestUtils.ConfigFile<DGTestDrivers.DGTes
     public final String parentId;
     public final String artifactName;
     public final String artifactVersion;
-    public final SmartPsiElementPointer<XmlTag> source;
-    private final NullableLazyValue<Icon> myIcon;
+    public final DGTagLocator source;
 
-    public DGTestDriver(String id, String parentId, String artifactName, String artifactVersion, XmlTag source) {
+    public DGTestDriver(String id, String parentId, String artifactName, String artifactVersion, @NotNull DGTagLocator source) {
       this.id = id;
       this.parentId = parentId;
       this.artifactName = artifactName;
       this.artifactVersion = artifactVersion;
-      this.source = SmartPointerManager.createPointer(source);
-      myIcon = DGTestUtils.createDbmsCorneredIcon(id, AllIcons.General.GearPlain);
+      this.source = source;
     }
 
 
@@ -120,13 +110,19 @@ public class DGTestDrivers implements DGTestUtils.ConfigFile<DGTestDrivers.DGTes
 
     @Nullable
     public Icon getIcon() {
-      return myIcon.getValue();
+      return DGTestUtils.getDbmsCorneredIcon(id, AllIcons.General.GearPlain);
+    }
+
+    @NotNull
+    @Override
+    public DGTagLocator getLocator() {
+      return source;
     }
 
     @Nullable
     @Override
     public XmlTag getSource() {
-      return source.getElement();
+      return source.resolve(id, tag -> "driver".equals(tag.getName()) && id.equals(tag.getAttributeValue("id")));
     }
   }
 }
@@ -0,0 +1,91 @@
+package com.github.kassak.dg;
+
+import com.intellij.execution.CommonJavaRunConfigurationParameters;
+import com.intellij.execution.configurations.RunConfiguration;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wall time of (test class, data source uuid) pairs from finished runs.
+ * Stored per test class as a single {@code uuid=millis;...} string to keep the workspace file small.
+ */
+@State(name = "DGTestHistory", storages = {
+  @Storage(StoragePathMacros.WORKSPACE_FILE),
+})
+public class DGTestHistory implements PersistentStateComponent<DGTestHistory.State> {
+  private final Map<String, Map<String, Long>> myDurations = new HashMap<>();
+
+  @NotNull
+  public static DGTestHistory getInstance(@NotNull Project project) {
+    return project.getService(DGTestHistory.class);
+  }
+
+  @Nullable
+  @Override
+  public synchronized State getState() {
+    State state = new State();
+    myDurations.forEach((testClass, durations) -> {
+      StringBuilder sb = new StringBuilder();
+      durations.forEach((uuid, millis) -> sb.append(uuid).append('=').append(millis).append(';'));
+      state.durations.put(testClass, sb.toString());
+    });
+    return state;
+  }
+
+  @Override
+  public synchronized void loadState(@NotNull State state) {
+    myDurations.clear();
+    state.durations.forEach((testClass, encoded) -> {
+      Map<String, Long> durations = new HashMap<>();
+      for (String entry : StringUtil.split(encoded, ";")) {
+        int eq = entry.lastIndexOf('=');
+        long millis = eq < 0 ? -1 : StringUtil.parseLong(entry.substring(eq + 1), -1);
+        if (millis >= 0) durations.put(entry.substring(0, eq), millis);
+      }
+      myDurations.put(testClass, durations);
+    });
+  }
+
+  /**
+   * History key of a run configuration: its test class when there is one, the configuration name otherwise.
+   */
+  @NotNull
+  public static String getTestClass(@NotNull RunConfiguration configuration) {
+    String runClass = configuration instanceof CommonJavaRunConfigurationParameters p ? p.getRunClass() : null;
+    return StringUtil.isEmpty(runClass) ? configuration.getName() : runClass;
+  }
+
+  /**
+   * Blends a new measurement into the recorded one, so a single slow run does not dominate.
+   */
+  public synchronized void record(@NotNull String testClass, @NotNull String uuid, long millis) {
+    myDurations.computeIfAbsent(testClass, k -> new HashMap<>()).merge(uuid, millis, (old, cur) -> (old + cur) / 2);
+  }
+
+  /**
+   * Recorded duration, or the mean over the test class when the data source has not run yet, or -1.
+   */
+  public synchronized long estimate(@NotNull String testClass, @NotNull String uuid) {
+    Map<String, Long> durations = myDurations.get(testClass);
+    if (durations == null || durations.isEmpty()) return -1;
+    Long millis = durations.get(uuid);
+    if (millis != null) return millis;
+    long total = 0;
+    for (long d : durations.values()) total += d;
+    return total / durations.size();
+  }
+
+  public static class State {
+    public Map<String, String> durations = new TreeMap<>();
+  }
+}
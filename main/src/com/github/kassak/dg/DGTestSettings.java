@@ -79,6 +79,46 @@ public class DGTestSettings implements PersistentStateComponent<DGTestSettings.S
     myState.attachRemote = attachRemote;
   }
 
+  public int getParallelShards() {
+    return myState.parallelShards;
+  }
+
+  public void setParallelShards(int parallelShards) {
+    myState.parallelShards = parallelShards;
+  }
+
+  public int getShardsPerDbms() {
+    return myState.shardsPerDbms;
+  }
+
+  public void setShardsPerDbms(int shardsPerDbms) {
+    myState.shardsPerDbms = shardsPerDbms;
+  }
+
+  public boolean isResolveUuids() {
+    return myState.resolveUuids;
+  }
+
+  public void setResolveUuids(boolean resolveUuids) {
+    myState.resolveUuids = resolveUuids;
+  }
+
+  public boolean isVerifyDrivers() {
+    return myState.verifyDrivers;
+  }
+
+  public void setVerifyDrivers(boolean verifyDrivers) {
+    myState.verifyDrivers = verifyDrivers;
+  }
+
+  public boolean isMinimalClasspath() {
+    return myState.minimalClasspath;
+  }
+
+  public void setMinimalClasspath(boolean minimalClasspath) {
+    myState.minimalClasspath = minimalClasspath;
+  }
+
 
   public static class State {
     public Set<String> filters = new TreeSet<>();
@@ -87,5 +127,10 @@ public class DGTestSettings implements PersistentStateComponent<DGTestSettings.S
     public boolean overwrite;
     public boolean inProcessRmi;
     public boolean attachRemote;
+    public boolean resolveUuids;
+    public boolean verifyDrivers;
+    public boolean minimalClasspath;
+    public int parallelShards = 4;
+    public int shardsPerDbms = 2;
   }
 }
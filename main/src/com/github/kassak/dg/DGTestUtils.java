@@ -1,69 +1,67 @@
 package com.github.kassak.dg;
 
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleManager;
-import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ContentEntry;
-import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.openapi.util.NullableLazyValue;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.ui.LayeredIcon;
 import com.intellij.util.IconUtil;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.containers.JBIterable;
+import com.intellij.ui.scale.JBUIScale;
 import com.intellij.util.ui.EmptyIcon;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class DGTestUtils {
-  @NotNull
-  public static JBIterable<ContentEntry> getTestContents(@NotNull Project project) {
-    return DGTestUtils.getContent(project, "intellij.database.tests")
-      .append(DGTestUtils.getContent(project, "intellij.database.connectivity.tests"));
-  }
+  private static final int MAX_CORNERED_ICONS = 256;
+  private static final Map<CorneredIconKey, Icon> ourCorneredIcons = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CorneredIconKey, Icon> eldest) {
+      return size() > MAX_CORNERED_ICONS;
+    }
+  };
 
-  @NotNull
-  public static JBIterable<ContentEntry> getContent(@NotNull Project project, String moduleName) {
-    return getModuleContent(findDGModule(project, moduleName));
-  }
-
-  @NotNull
-  public static JBIterable<ContentEntry> getModuleContent(@Nullable Module m) {
-    return JBIterable.of(m == null ? null : ModuleRootManager.getInstance(m).getContentEntries());
+  public static boolean isConfigFile(@NotNull String name) {
+    return DGTestDataSources.isTestDataSource(name) || DGTestDrivers.isTestDatabaseDrivers(name) || DGTestArtifacts.isDatabaseArtifacts(name);
   }
 
+  /**
+   * Icon of the DBMS detected in {@code dbmsStr} with {@code corner} in the bottom right quarter.
+   * Icons are shared between all items with the same DBMS, corner and UI scale. Each DBMS has a single icon,
+   * so the detected icon stands for the DBMS in the key and {@code Dbms} stays out of SQL-independent code.
+   */
   @Nullable
-  public static Module findDGModule(@NotNull Project project, String moduleName) {
-    return DGFilterComboBoxAction.isDGProject(project) ? ModuleManager.getInstance(project).findModuleByName(moduleName) : null;
+  public static Icon getDbmsCorneredIcon(String dbmsStr, @NotNull Icon corner) {
+    PresentationHelper ph = ApplicationManager.getApplication().getService(PresentationHelper.class);
+    if (ph == null) return null;
+    Icon dbmsIcon = ObjectUtils.notNull(ph.detectIcon(dbmsStr), EmptyIcon.ICON_16);
+    CorneredIconKey key = new CorneredIconKey(dbmsIcon, corner, JBUIScale.scale(1f));
+    synchronized (ourCorneredIcons) {
+      return ourCorneredIcons.computeIfAbsent(key, DGTestUtils::createCorneredIcon);
+    }
   }
 
   @NotNull
-  public static JBIterable<Module> getDGModules(@NotNull Project project) {
-    return DGFilterComboBoxAction.isDGProject(project)
-      ? JBIterable.of(ModuleManager.getInstance(project).getModules())
-      : JBIterable.empty();
-  }
-  @NotNull
-  public static JBIterable<Module> findDGSubModules(@NotNull Project project, String moduleNamePrefix) {
-    return getDGModules(project).filter(m -> m.getName().startsWith(moduleNamePrefix));
+  private static Icon createCorneredIcon(@NotNull CorneredIconKey key) {
+    LayeredIcon result = new LayeredIcon(2);
+    result.setIcon(key.dbms(), 0);
+    int h = key.dbms().getIconHeight() / 2;
+    int w = key.dbms().getIconWidth() / 2;
+    result.setIcon(IconUtil.toSize(key.corner(), w, h), 1, w, h);
+    return result;
   }
 
-  @NotNull
-  public static NullableLazyValue<Icon> createDbmsCorneredIcon(String dbmsStr, Icon corner) {
-    return NullableLazyValue.lazyNullable(() -> {
-      PresentationHelper ph = ApplicationManager.getApplication().getService(PresentationHelper.class);
-      if (ph == null) return null;
-      Icon dbmsIcon = ObjectUtils.notNull(ph.detectIcon(dbmsStr), EmptyIcon.ICON_16);
-      LayeredIcon result = new LayeredIcon(2);
-      result.setIcon(dbmsIcon, 0);
-      int h = dbmsIcon.getIconHeight() / 2;
-      int w = dbmsIcon.getIconWidth() / 2;
-      result.setIcon(IconUtil.toSize(corner, w, h), 1, w, h);
-      return result;
-    });
+  private record CorneredIconKey(@NotNull Icon dbms, @NotNull Icon corner, float scale) {
   }
 
   public interface ConfigFile<T extends ConfigItem> {
@@ -74,6 +72,58 @@ public class DGTestUtils {
     JBIterable<T> getItems();
   }
 
+  public interface ConfigParser<T extends ConfigItem, F extends ConfigFile<T>> {
+    @NotNull
+    String getItemTag();
+
+    /**
+     * Parses an item tag the scanner is positioned at, children are consumed.
+     * {@code stamp} is the stamp of the scanned text, see {@link DGTagLocator}.
+     */
+    @NotNull
+    List<T> parse(@NotNull DGConfigXmlScanner scanner, @NotNull VirtualFile file, long stamp);
+
+    @NotNull
+    F create(@NotNull String fileName, @NotNull List<T> items);
+
+    /**
+     * Fields of the item stored by {@link DGConfigIndex}, the offset is stored separately.
+     * The first field is the item id, the index key.
+     */
+    String @NotNull [] externalize(@NotNull T item);
+
+    /**
+     * Restores an item from the fields returned by {@link #externalize}.
+     */
+    @NotNull
+    T internalize(String @NotNull [] fields, @NotNull DGTagLocator locator);
+
+    /**
+     * Reports items of every top-level item tag in document order, including tags which yield no items.
+     * Checks for cancellation between item tags, it runs in indexing and in cancellable read actions.
+     */
+    default void parse(@NotNull CharSequence text, @NotNull VirtualFile file, long stamp, @NotNull Consumer<? super List<T>> consumer) {
+      DGConfigXmlScanner scanner = new DGConfigXmlScanner(text);
+      String itemTag = getItemTag();
+      while (scanner.nextTag()) {
+        if (scanner.getDepth() == 1 && scanner.isTag(itemTag)) {
+          ProgressManager.checkCanceled();
+          consumer.accept(parse(scanner, file, stamp));
+        }
+      }
+    }
+
+    /**
+     * Parses the text of one top-level tag which starts at {@code offset} of the document.
+     * The result is empty if it is no longer an item tag.
+     */
+    @NotNull
+    default List<T> parseTag(@NotNull CharSequence text, int offset, @NotNull VirtualFile file, long stamp) {
+      DGConfigXmlScanner scanner = new DGConfigXmlScanner(text, offset, 1);
+      return scanner.nextTag() && scanner.isTag(getItemTag()) ? parse(scanner, file, stamp) : Collections.emptyList();
+    }
+  }
+
   public interface ConfigItem {
     @NotNull
     String getName();
@@ -81,9 +131,21 @@ public class DGTestUtils {
     @Nullable
     Icon getIcon();
 
+    @NotNull
+    DGTagLocator getLocator();
+
     @Nullable
     XmlTag getSource();
 
+    /**
+     * For callers holding the tag across edits, items themselves keep only a {@link DGTagLocator}.
+     */
+    @Nullable
+    default SmartPsiElementPointer<XmlTag> createSourcePointer() {
+      XmlTag tag = getSource();
+      return tag == null ? null : SmartPointerManager.createPointer(tag);
+    }
+
   }
 
   public interface PresentationHelper {
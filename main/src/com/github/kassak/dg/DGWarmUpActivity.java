@@ -0,0 +1,56 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.ProjectActivity;
+import kotlin.Unit;
+import kotlin.coroutines.Continuation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Builds the config model once indexing is over, so the first Goto Symbol, completion or filter popup finds it ready.
+ */
+public class DGWarmUpActivity implements ProjectActivity {
+  @Nullable
+  @Override
+  public Object execute(@NotNull Project project, @NotNull Continuation<? super Unit> continuation) {
+    DumbService.getInstance(project).runWhenSmart(() -> warmUp(project));
+    return Unit.INSTANCE;
+  }
+
+  private static void warmUp(@NotNull Project project) {
+    if (project.isDisposed()) return;
+    new Task.Backgroundable(project, "Loading DG test configs", true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        DGConfigModel model = DGConfigModel.getInstance(project);
+        indicator.setIndeterminate(true);
+        indicator.setText("Loading data sources, drivers and artifacts");
+        boolean dg = ReadAction.nonBlocking(() -> {
+            if (!DGFilterComboBoxAction.isDGProject(project)) return false;
+            DGConfigModel.Snapshot snapshot = model.getSnapshot();
+            snapshot.getDriverGraph();
+            snapshot.getNames();
+            return true;
+          })
+          .inSmartMode(project)
+          .expireWith(model)
+          .wrapProgress(indicator)
+          .executeSynchronously();
+        if (!dg) return;
+        indicator.setText("Matching DS filters");
+        ReadAction.nonBlocking(() -> DGFilterEngine.getInstance(project).warmUp(new ArrayList<>(DGTestSettings.getInstance(project).getFilters())))
+          .inSmartMode(project)
+          .expireWith(model)
+          .wrapProgress(indicator)
+          .executeSynchronously();
+      }
+    }.queue();
+  }
+}
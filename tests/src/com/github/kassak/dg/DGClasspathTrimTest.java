@@ -0,0 +1,62 @@
+package com.github.kassak.dg;
+
+import com.intellij.util.PathsList;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Minimal classpath of a run over a single data source: jars of artifacts outside its driver closure are dropped.
+ */
+public class DGClasspathTrimTest extends DGLightTestCase {
+  private static final String REPO = "/home/user/.m2/repository/";
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    addTestFile("test-data-sources.xml", dataSources(8));
+    addTestFile("test-database-drivers.xml", drivers(8));
+    addTestFile("test-database-artifacts.xml", artifacts(2));
+  }
+
+  public void testClosure() {
+    DGDriverJarVerifier.Inventory inventory = collect("ds_1");
+    assertEmpty(inventory.problems);
+    assertSameElements(inventory.drivers, "driver_1", "driver_0");
+    assertSameElements(inventory.artifacts.keySet(), artifactId(0));
+    assertSameElements(inventory.artifacts.get(artifactId(0)), "0.0");
+  }
+
+  public void testTrimClasspath() {
+    DGDriverJarVerifier.Inventory inventory = collect("ds_1");
+    Path driversDir = DGDriverJarVerifier.getDriversDir();
+    PathsList classPath = new PathsList();
+    classPath.add("/project/out/production/intellij.database");
+    classPath.add(REPO + "org/example/driver-0/0/driver-0-0.jar");
+    classPath.add(REPO + "org/example/driver-0/1/driver-0-1.jar");
+    classPath.add(REPO + "org/example/driver-1/1/driver-1-1.jar");
+    classPath.add(REPO + "org/other/driver-1/1/driver-1-1.jar");
+    classPath.add(driversDir.resolve(artifactId(0)).resolve("0.0").resolve("driver.jar").toString());
+    classPath.add(driversDir.resolve(artifactId(1)).resolve("1.0").resolve("driver.jar").toString());
+    DGConfigurationExtension.trimClasspath(inventory, classPath);
+    assertEquals(List.of("/project/out/production/intellij.database",
+                         REPO + "org/example/driver-0/0/driver-0-0.jar",
+                         REPO + "org/other/driver-1/1/driver-1-1.jar",
+                         driversDir.resolve(artifactId(0)).resolve("0.0").resolve("driver.jar").toString()),
+                 classPath.getPathList());
+  }
+
+  public void testSharedJarKept() {
+    addTestFile("other-test-database-artifacts.xml",
+                "<artifacts><artifact id=\"Other\" version=\"1\"><item type=\"maven\" url=\"org.example:driver-0:0\"/></artifact></artifacts>");
+    DGDriverJarVerifier.Inventory inventory = collect("ds_1");
+    assertTrue(inventory.isNeeded(Path.of(REPO + "org/example/driver-0/0/driver-0-0.jar"), DGDriverJarVerifier.getDriversDir()));
+  }
+
+  @NotNull
+  private DGDriverJarVerifier.Inventory collect(@NotNull String uuid) {
+    DGConfigModel.Snapshot snapshot = DGConfigModel.getInstance(getProject()).getSnapshot();
+    return DGDriverJarVerifier.collect(snapshot, snapshot.getDataSources(uuid));
+  }
+}
@@ -0,0 +1,55 @@
+package com.github.kassak.dg;
+
+import com.intellij.codeInsight.lookup.LookupManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Completion variants of driver references and artifact versions, served from {@link DGCompletionPool}.
+ */
+public class DGConfigCompletionPerformanceTest extends DGLightTestCase {
+  private static final int SIZE = 2000;
+  private static final int RUNS = 20;
+  /**
+   * The lookup itself, elements come from the pool and only get wrapped by the platform.
+   */
+  private static final long BYTES_PER_COMPLETION = 2 * 1024 * 1024;
+  private static final long BYTES_PER_VARIANT = 1024;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    addTestFile("test-database-drivers.xml", drivers(SIZE));
+    addTestFile("test-database-artifacts.xml", artifacts(SIZE / 4));
+    DGConfigModel.getInstance(getProject()).getSnapshot().getCompletionPool();
+  }
+
+  public void testDriverRefVariants() {
+    myFixture.configureByText("test-data-sources.xml",
+                              "<dataSources><data-source uuid=\"ds\"><driver-ref>driver_1<caret></driver-ref></data-source></dataSources>");
+    // driver_1, driver_10..19, driver_100..199, driver_1000..1999
+    assertVariants("driver-ref completion", 1 + 10 + 100 + 1000, 1500);
+  }
+
+  public void testArtifactVersionVariants() {
+    myFixture.configureByText("my-drivers.xml",
+                              "<drivers><driver id=\"d\"><artifact id=\"" + artifactId(1) + "\" version=\"<caret>\"/></driver></drivers>");
+    assertVariants("artifact version completion", 3, 500);
+  }
+
+  private void assertVariants(@NotNull String what, int expected, int expectedMs) {
+    Runnable complete = () -> {
+      for (int i = 0; i < RUNS; i++) {
+        myFixture.completeBasic();
+        List<String> variants = myFixture.getLookupElementStrings();
+        assertNotNull(variants);
+        assertEquals(expected, variants.size());
+        LookupManager.getInstance(getProject()).hideActiveLookup();
+      }
+    };
+    PlatformTestUtil.startPerformanceTest(what, expectedMs, complete::run).attempts(5).assertTiming();
+    assertAllocations(what, RUNS * (BYTES_PER_COMPLETION + expected * BYTES_PER_VARIANT), complete);
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.kassak.dg;
+
+import com.github.kassak.dg.DGTestDataSources.DGTestDataSource;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Edits of config files: inside a data source tag they patch the file's segment, elsewhere the file is re-read.
+ */
+public class DGConfigModelTest extends DGLightTestCase {
+  private VirtualFile myFile;
+  private Document myDocument;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFile = addTestFile("test-data-sources.xml", dataSources(3));
+    myDocument = FileDocumentManager.getInstance().getDocument(myFile);
+    assertEquals(3, getSnapshot().getDataSources().size());
+  }
+
+  public void testEditInsideTag() {
+    DGTestDataSource first = find("ds_1");
+    DGTestDataSource last = find("ds_2");
+    int lastOffset = last.getLocator().getOffset();
+    insert("driver_1|</driver-ref>", "x");
+    assertEquals("driver_1x", find("ds_1").driverRef);
+    assertNotSame(first, find("ds_1"));
+    assertSame(last, find("ds_2"));
+    assertEquals(lastOffset + 1, last.getLocator().getOffset());
+    assertEquals(DGConfigModel.getStamp(getProject(), myFile), last.getLocator().getStamp());
+    assertNotNull(last.getSource());
+  }
+
+  public void testEditKeepingItems() {
+    DGConfigModel.Snapshot snapshot = getSnapshot();
+    DGTestDataSource last = find("ds_2");
+    insert("<jdbc-url>|", " ");
+    assertSame(snapshot, getSnapshot());
+    assertNotNull(last.getSource());
+  }
+
+  public void testTagAdded() {
+    insert("|</dataSources>", "<data-source uuid=\"ds_new\"/>\n");
+    assertEquals(4, getSnapshot().getDataSources().size());
+    assertNotNull(find("ds_new").getSource());
+  }
+
+  /**
+   * Inserts the text at {@code |} of the first occurrence of the marker.
+   */
+  private void insert(@NotNull String marker, @NotNull String text) {
+    int caret = marker.indexOf('|');
+    int offset = myDocument.getText().indexOf(marker.substring(0, caret) + marker.substring(caret + 1));
+    assertTrue(marker, offset >= 0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> myDocument.insertString(offset + caret, text));
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+  }
+
+  @NotNull
+  private DGTestDataSource find(@NotNull String uuid) {
+    DGTestDataSource res = ContainerUtil.getOnlyItem(getSnapshot().getDataSources(uuid));
+    assertNotNull(uuid, res);
+    return res;
+  }
+
+  @NotNull
+  private DGConfigModel.Snapshot getSnapshot() {
+    return DGConfigModel.getInstance(getProject()).getSnapshot();
+  }
+}
@@ -0,0 +1,100 @@
+package com.github.kassak.dg;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.SyntaxTraverser;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.xml.XmlAttributeValue;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FindSymbolParameters;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Goto Symbol names and reference resolve over generated configs, through the registered contributors.
+ */
+public class DGConfigResolvePerformanceTest extends DGLightTestCase {
+  private static final int SIZE = 2000;
+  /**
+   * References, lookups and the locator walk of one resolve.
+   */
+  private static final long BYTES_PER_RESOLVE = 8 * 1024;
+  private static final long BYTES_PER_NAME = 256;
+
+  private PsiFile myDataSources;
+  private PsiFile myDrivers;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    PsiManager psiManager = PsiManager.getInstance(getProject());
+    myDataSources = psiManager.findFile(addTestFile("test-data-sources.xml", dataSources(SIZE)));
+    myDrivers = psiManager.findFile(addTestFile("test-database-drivers.xml", drivers(SIZE)));
+    addTestFile("test-database-artifacts.xml", artifacts(SIZE / 4));
+    assertEquals(SIZE, DGConfigModel.getInstance(getProject()).getSnapshot().getDrivers().size());
+  }
+
+  public void testDriverRefResolve() {
+    List<XmlTag> tags = SyntaxTraverser.psiTraverser(myDataSources).filter(XmlTag.class)
+      .filter(tag -> "driver-ref".equals(tag.getName()))
+      .toList();
+    assertEquals(SIZE, tags.size());
+    Runnable resolve = () -> {
+      for (XmlTag tag : tags) {
+        assertResolved(tag.getReferences());
+      }
+    };
+    PlatformTestUtil.startPerformanceTest("driver-ref resolve", 1500, resolve::run).attempts(5).assertTiming();
+    assertAllocations("driver-ref resolve", tags.size() * BYTES_PER_RESOLVE, resolve);
+  }
+
+  public void testDriverAttributesResolve() {
+    List<XmlAttributeValue> values = SyntaxTraverser.psiTraverser(myDrivers).filter(XmlAttributeValue.class)
+      .filter(value -> DGConfigReferenceContributor.driverBaseValue().accepts(value) ||
+                       DGConfigReferenceContributor.driverArtifactIdValue().accepts(value) ||
+                       DGConfigReferenceContributor.driverArtifactVersionValue().accepts(value))
+      .toList();
+    // based-on of 3/4 of the drivers, artifact id and version of the rest
+    assertEquals(SIZE / 4 * 3 + SIZE / 4 * 2, values.size());
+    Runnable resolve = () -> {
+      for (XmlAttributeValue value : values) {
+        assertResolved(value.getReferences());
+      }
+    };
+    PlatformTestUtil.startPerformanceTest("based-on and artifact resolve", 1500, resolve::run).attempts(5).assertTiming();
+    assertAllocations("based-on and artifact resolve", values.size() * BYTES_PER_RESOLVE, resolve);
+  }
+
+  public void testGotoSymbolNames() {
+    DGTestConfigEntityContributor contributor = new DGTestConfigEntityContributor();
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(getProject());
+    FindSymbolParameters parameters = FindSymbolParameters.simple(getProject(), false);
+    Runnable collect = () -> {
+      List<String> names = new ArrayList<>();
+      contributor.processNames(names::add, scope, null);
+      assertTrue(names.size() >= SIZE * 2);
+      for (int i = 0; i < SIZE; i += 10) {
+        int[] found = new int[1];
+        contributor.processElementsWithName("ds_" + i, item -> ++found[0] > 0, parameters);
+        assertEquals(1, found[0]);
+      }
+    };
+    PlatformTestUtil.startPerformanceTest("goto symbol names", 1000, collect::run).attempts(5).assertTiming();
+    // names of data sources, drivers and artifacts, and the elements of every tenth data source
+    assertAllocations("goto symbol names", SIZE * 3 * BYTES_PER_NAME + SIZE / 10 * BYTES_PER_RESOLVE, collect);
+  }
+
+  /**
+   * XML adds its own references to tags, only the config one is checked.
+   */
+  private static void assertResolved(PsiReference @NotNull [] references) {
+    PsiReference reference = ContainerUtil.find(references, r -> r.getClass().getEnclosingClass() == DGConfigReferenceContributor.class);
+    assertNotNull(reference);
+    assertNotNull(reference.getCanonicalText(), reference.resolve());
+  }
+}
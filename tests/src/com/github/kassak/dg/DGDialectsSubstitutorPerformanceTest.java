@@ -0,0 +1,53 @@
+package com.github.kassak.dg;
+
+import com.intellij.database.Dbms;
+import com.intellij.database.util.DbSqlUtil;
+import com.intellij.lang.Language;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dialect lookups for SQL files of a deep test-data tree, where most files only get a dialect from a folder far above.
+ * SQL support is optional, the test does nothing without it.
+ */
+public class DGDialectsSubstitutorPerformanceTest extends DGLightTestCase {
+  private static final int DEPTH = 30;
+  private static final int FILES_PER_FOLDER = 5;
+  private static final int RUNS = 100;
+  /**
+   * Lookups are served from the folder cache.
+   */
+  private static final long BYTES_PER_LOOKUP = 256;
+
+  public void testDeepTreeLookup() {
+    if (Language.findLanguageByID("SQL") == null) return;
+    List<VirtualFile> byFolder = new ArrayList<>();
+    List<VirtualFile> byName = new ArrayList<>();
+    StringBuilder path = new StringBuilder("testData/pg");
+    for (int level = 0; level < DEPTH; level++) {
+      path.append("/level").append(level);
+      for (int i = 0; i < FILES_PER_FOLDER; i++) {
+        byFolder.add(addTestFile(path + "/test_" + i + ".sql", "select " + i + ";"));
+      }
+      byName.add(addTestFile(path + "/mysql_" + level + ".sql", "select 1;"));
+    }
+    Language postgres = DbSqlUtil.getSqlDialect(Dbms.POSTGRES);
+    Language mysql = DbSqlUtil.getSqlDialect(Dbms.MYSQL);
+    DGDialectsSubstitutor substitutor = new DGDialectsSubstitutor();
+    Runnable lookup = () -> {
+      for (int i = 0; i < RUNS; i++) {
+        for (VirtualFile file : byFolder) {
+          assertEquals(file.getPath(), postgres, substitutor.getLanguage(file, getProject()));
+        }
+        for (VirtualFile file : byName) {
+          assertEquals(file.getPath(), mysql, substitutor.getLanguage(file, getProject()));
+        }
+      }
+    };
+    PlatformTestUtil.startPerformanceTest("dialect lookup in a deep tree", 1000, lookup::run).attempts(5).assertTiming();
+    assertAllocations("dialect lookup in a deep tree", (long)RUNS * (byFolder.size() + byName.size()) * BYTES_PER_LOOKUP, lookup);
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.kassak.dg;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bitsets of cached filters as uuids come and go.
+ */
+public class DGFilterIndexTest extends TestCase {
+  private final DGFilterIndex myIndex = new DGFilterIndex(() -> {});
+
+  public void testAdded() {
+    myIndex.update(List.of("pg_1", "my_1"));
+    assertMatches("pg_.*", "pg_1");
+    myIndex.update(List.of("pg_1", "my_1", "pg_2"));
+    assertMatches("pg_.*", "pg_1", "pg_2");
+  }
+
+  public void testRemoved() {
+    myIndex.update(List.of("pg_1", "my_1", "pg_2"));
+    assertMatches("pg_.*", "pg_1", "pg_2");
+    myIndex.update(List.of("my_1", "pg_2"));
+    assertMatches("pg_.*", "pg_2");
+  }
+
+  public void testRemovedThenAdded() {
+    myIndex.update(List.of("pg_1", "my_1"));
+    assertMatches("pg_.*", "pg_1");
+    myIndex.update(List.of("my_1"));
+    assertMatches("pg_.*");
+    myIndex.update(List.of("pg_1", "my_1"));
+    assertMatches("pg_.*", "pg_1");
+  }
+
+  public void testCompacted() {
+    for (int i = 0; i < 100; i++) {
+      myIndex.update(List.of("pg_" + i, "my_" + i));
+      assertMatches("pg_.*", "pg_" + i);
+    }
+    myIndex.update(List.of("pg_0", "my_0"));
+    assertMatches("pg_.*", "pg_0");
+    assertMatches("my_.*", "my_0");
+  }
+
+  public void testInvalid() {
+    myIndex.update(List.of("pg_1"));
+    assertNull(myIndex.compile("pg_("));
+    assertNull(myIndex.matchOnce("pg_("));
+  }
+
+  private void assertMatches(String filter, String... expected) {
+    assertEquals(Arrays.asList(expected), myIndex.getUuids(myIndex.matches(filter), Integer.MAX_VALUE));
+  }
+}
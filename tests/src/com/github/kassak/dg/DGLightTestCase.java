@@ -0,0 +1,145 @@
+package com.github.kassak.dg;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.JavaModuleType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.sun.management.ThreadMXBean;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.model.java.JavaResourceRootType;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Light fixture with the modules {@link DGModules} takes for the DG project: {@code intellij.database}
+ * and the {@code intellij.database.tests} test module, whose content and test resource root is {@link #TESTS_DIR}.
+ * The modules come with the project descriptor, so the light project shared by these tests always has them
+ * and no test changes its module layout.
+ */
+public abstract class DGLightTestCase extends BasePlatformTestCase {
+  protected static final String TESTS_DIR = "tests";
+  private static final String DG_DIR = "database";
+  private static final String[] DBMS = {"POSTGRES", "MYSQL", "ORACLE", "MSSQL", "SQLITE", "CLICKHOUSE", "DB2", "H2", "HSQL", "SNOWFLAKE"};
+
+  /**
+   * Module roots are directories of the light module source root, where the fixture adds files.
+   */
+  private static final LightProjectDescriptor DESCRIPTOR = new LightProjectDescriptor() {
+    private VirtualFile mySourceRoot;
+
+    @Override
+    protected VirtualFile createSourcesRoot(@NotNull Module module) {
+      mySourceRoot = super.createSourcesRoot(module);
+      return mySourceRoot;
+    }
+
+    @Override
+    public void setUpProject(@NotNull Project project, @NotNull SetupHandler handler) throws Exception {
+      super.setUpProject(project, handler);
+      WriteAction.run(() -> {
+        addModule(project, DGModules.DG_MODULE_PREFIX, VfsUtil.createDirectoryIfMissing(mySourceRoot, DG_DIR));
+        VirtualFile tests = VfsUtil.createDirectoryIfMissing(mySourceRoot, TESTS_DIR);
+        PsiTestUtil.addSourceRoot(addModule(project, DGModules.DG_MODULE_PREFIX + ".tests", tests), tests, JavaResourceRootType.TEST_RESOURCE);
+      });
+    }
+  };
+
+  @NotNull
+  private static Module addModule(@NotNull Project project, @NotNull String name, @NotNull VirtualFile root) {
+    return PsiTestUtil.addModule(project, JavaModuleType.getModuleType(), name, root);
+  }
+
+  @Override
+  protected LightProjectDescriptor getProjectDescriptor() {
+    return DESCRIPTOR;
+  }
+
+  /**
+   * The fixture clears the source root after every test, module roots come back with their directories.
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFixture.getTempDirFixture().findOrCreateDir(DG_DIR);
+    myFixture.getTempDirFixture().findOrCreateDir(TESTS_DIR);
+  }
+
+  /**
+   * Runs the action once to warm caches up, then fails if a second run allocates more than {@code budget} bytes.
+   * Only allocations of the current thread are counted, the measured operations run on it.
+   */
+  protected static void assertAllocations(@NotNull String what, long budget, @NotNull Runnable action) {
+    ThreadMXBean bean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    action.run();
+    long before = bean.getThreadAllocatedBytes(thread);
+    action.run();
+    long allocated = bean.getThreadAllocatedBytes(thread) - before;
+    assertTrue(what + " allocated " + allocated + " bytes, budget is " + budget, allocated <= budget);
+  }
+
+  /**
+   * Adds a file under the test module content root, configs right in it are read by {@link DGConfigModel}.
+   */
+  @NotNull
+  protected VirtualFile addTestFile(@NotNull String path, @NotNull String text) {
+    return myFixture.addFileToProject(TESTS_DIR + "/" + path, text).getVirtualFile();
+  }
+
+  @NotNull
+  protected static String dataSources(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<dataSources>\n");
+    for (int i = 0; i < size; i++) {
+      String dbms = DBMS[i % DBMS.length];
+      sb.append("  <data-source name=\"ds_").append(i).append("\" uuid=\"ds_").append(i).append("\">\n")
+        .append("    <database-info dbms=\"").append(dbms).append("\" exact-version=\"").append(10 + i % 7).append(".0\"/>\n")
+        .append("    <driver-ref>driver_").append(i).append("</driver-ref>\n")
+        .append("    <jdbc-url>jdbc:test://localhost:5432/db").append(i).append("</jdbc-url>\n")
+        .append("  </data-source>\n");
+    }
+    return sb.append("</dataSources>\n").toString();
+  }
+
+  /**
+   * Every fourth driver is a root with an artifact, the others are based on it.
+   */
+  @NotNull
+  protected static String drivers(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<drivers>\n");
+    for (int i = 0; i < size; i++) {
+      sb.append("  <driver id=\"driver_").append(i).append('"');
+      if (i % 4 != 0) sb.append(" based-on=\"driver_").append(i / 4 * 4).append('"');
+      sb.append(" name=\"Driver ").append(i).append("\">\n");
+      if (i % 4 == 0) {
+        sb.append("    <artifact id=\"").append(artifactId(i / 4)).append("\" version=\"").append(i % 3).append(".0\"/>\n");
+      }
+      sb.append("  </driver>\n");
+    }
+    return sb.append("</drivers>\n").toString();
+  }
+
+  @NotNull
+  protected static String artifacts(int size) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<artifacts>\n");
+    for (int i = 0; i < size; i++) {
+      sb.append("  <artifact id=\"").append(artifactId(i)).append("\">\n");
+      for (int v = 0; v < 3; v++) {
+        sb.append("    <version version=\"").append(v).append(".0\">\n")
+          .append("      <item type=\"maven\" url=\"org.example:driver-").append(i).append(':').append(v).append("\"/>\n")
+          .append("    </version>\n");
+      }
+      sb.append("  </artifact>\n");
+    }
+    return sb.append("</artifacts>\n").toString();
+  }
+
+  @NotNull
+  protected static String artifactId(int i) {
+    return DBMS[i % DBMS.length] + " JDBC " + i;
+  }
+}